@@ -15,34 +15,69 @@
  */
 package org.springframework.cfenv.spring.boot;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.cloud.CloudPlatform;
 import org.springframework.boot.context.config.ConfigFileApplicationListener;
 import org.springframework.boot.context.event.ApplicationPreparedEvent;
 import org.springframework.boot.env.EnvironmentPostProcessor;
 import org.springframework.boot.logging.DeferredLog;
 import org.springframework.cfenv.jdbc.CfJdbcEnv;
 import org.springframework.cfenv.jdbc.CfJdbcService;
+import org.springframework.cfenv.jdbc.CfJdbcUrlCreator;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.core.Ordered;
 import org.springframework.core.env.CommandLinePropertySource;
 import org.springframework.core.env.ConfigurableEnvironment;
-import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySource;
 
 /**
+ * Sets {@code spring.datasource} properties from the single bound database service.
+ *
+ * <p>If the connection limit of the database is known, either from a
+ * {@code max_connections} credential or from the {@code cfenv.jdbc.pool.plan-limits}
+ * table keyed by service plan, the limit is divided by
+ * {@code cfenv.jdbc.pool.instance-count} and the result is set as the Hikari maximum
+ * pool size and minimum idle count. These pool properties have the lowest precedence, so
+ * values set by the application still apply.
+ *
+ * <p>The JDBC URLs of read replicas published by the service are set as
+ * {@code cfenv.jdbc.read-replicas.urls}, see {@link CfReadReplicaDataSourceAutoConfiguration}.
+ *
+ * <p>The properties are computed when they are read, so {@code cfenv.jdbc} settings such
+ * as {@code cfenv.jdbc.service.<service-name>.profile} and {@code cfenv.jdbc.pool.*} can
+ * be made in application configuration files as well as in system properties,
+ * environment variables and command line arguments.
+ *
  * @author Mark Pollack
  */
 public class CfDataSourceEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered,
 		ApplicationListener<ApplicationEvent> {
 
-	private static DeferredLog DEFERRED_LOG = new DeferredLog();
+	public static final String POOL_PROPERTY_PREFIX = "cfenv.jdbc.pool.";
+
+	public static final String POOL_PLAN_LIMITS = POOL_PROPERTY_PREFIX + "plan-limits.";
+
+	public static final String POOL_INSTANCE_COUNT = POOL_PROPERTY_PREFIX + "instance-count";
+
+	public static final String POOL_MINIMUM_IDLE = POOL_PROPERTY_PREFIX + "minimum-idle";
 
-	private static int invocationCount;
+	private static final String PROPERTY_SOURCE_NAME = "cfenvjdbc";
+
+	private static final String POOL_PROPERTY_SOURCE_NAME = "cfenvjdbcpool";
+
+	private static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfDataSourceEnvironmentPostProcessor.class);
+
+	private static final AtomicInteger invocationCount = new AtomicInteger();
 
 	// Before ConfigFileApplicationListener so values there can use these ones
 	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
@@ -58,43 +93,44 @@ public class CfDataSourceEnvironmentPostProcessor implements EnvironmentPostProc
 	}
 
 	@Override
-	public void postProcessEnvironment(ConfigurableEnvironment environment,
-			SpringApplication application) {
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME, POOL_PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
 		increaseInvocationCount();
-		if (CloudPlatform.CLOUD_FOUNDRY.isActive(environment)) {
-			CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		if (CfEnvPlatform.isActive(environment)) {
+			CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(environment::getProperty);
 			CfJdbcService cfJdbcService;
 			try {
 				cfJdbcService = cfJdbcEnv.findJdbcService();
 			}
 			catch (Exception e) {
-				if (invocationCount == 1) {
+				if (invocationCount.get() == 1) {
 					DEFERRED_LOG.debug("Skipping execution of CfDataSourceEnvironmentPostProcessor. " + e.getMessage());
 				}
 				return;
 			}
 			if (cfJdbcService != null) {
-				Map<String, Object> properties = new LinkedHashMap<>();
-				properties.put("spring.datasource.url", cfJdbcService.getUrl());
-				properties.put("spring.datasource.username", cfJdbcService.getUsername());
-				properties.put("spring.datasource.password", cfJdbcService.getPassword());
-				properties.put("spring.datasource.driver-class-name", cfJdbcService.getDriverClassName());
-
+				CfEnvDefaultsPropertySource propertySource = new CfEnvDefaultsPropertySource(PROPERTY_SOURCE_NAME,
+						environment, (resolver) -> getConnectionProperties(resolver, cfJdbcService));
 				MutablePropertySources propertySources = environment.getPropertySources();
 				if (propertySources.contains(
 						CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
 					propertySources.addAfter(
-							CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME,
-							new MapPropertySource("cfenvjdbc", properties));
+							CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, propertySource);
 				}
 				else {
-					propertySources
-							.addFirst(new MapPropertySource("cfenvjdbc", properties));
+					propertySources.addFirst(propertySource);
 				}
-				if (invocationCount == 1) {
+				CfEnvStartupReport.recordClaim(cfJdbcService.getName(), getClass().getName() + " using "
+						+ cfJdbcService.getJdbcUrlCreatorType().getName());
+				if (invocationCount.get() == 1) {
 					DEFERRED_LOG.info("Setting spring.datasource.url property from bound service ["
 							+ cfJdbcService.getName() + "]");
 				}
+				addPoolSizeProperties(environment, cfJdbcService);
 			}
 		}
 		else {
@@ -102,20 +138,65 @@ public class CfDataSourceEnvironmentPostProcessor implements EnvironmentPostProc
 		}
 	}
 
+	/**
+	 * Return the connection properties of the given service. The JDBC URL is created again
+	 * from the current environment, so that {@code cfenv.jdbc.service} settings made in
+	 * application configuration files apply.
+	 */
+	private static Map<String, Object> getConnectionProperties(PropertyResolver resolver, CfJdbcService cfJdbcService) {
+		CfJdbcService configuredService = new CfJdbcUrlCreator(Collections.singletonList(cfJdbcService),
+				resolver::getProperty).findJdbcService();
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("spring.datasource.url", configuredService.getUrl());
+		properties.put("spring.datasource.username", configuredService.getUsername());
+		properties.put("spring.datasource.password", configuredService.getPassword());
+		properties.put("spring.datasource.driver-class-name", configuredService.getDriverClassName());
+		List<String> replicaUrls = configuredService.getReplicaUrls();
+		for (int i = 0; i < replicaUrls.size(); i++) {
+			properties.put(CfReadReplicaDataSourceAutoConfiguration.REPLICA_URLS + "[" + i + "]",
+					replicaUrls.get(i));
+		}
+		return properties;
+	}
+
+	private void addPoolSizeProperties(ConfigurableEnvironment environment, CfJdbcService cfJdbcService) {
+		// Lowest precedence so that pool sizes configured by the application win
+		environment.getPropertySources().addLast(new CfEnvDefaultsPropertySource(POOL_PROPERTY_SOURCE_NAME,
+				environment, (resolver) -> getPoolSizeProperties(resolver, cfJdbcService)));
+	}
+
+	private static Map<String, Object> getPoolSizeProperties(PropertyResolver resolver, CfJdbcService cfJdbcService) {
+		CfEnvPoolSizing poolSizing = CfEnvPoolSizing.of(resolver, cfJdbcService, DEFERRED_LOG);
+		Map<String, Object> properties = new LinkedHashMap<>();
+		if (poolSizing != null) {
+			properties.put(MAXIMUM_POOL_SIZE, poolSizing.getMaximumPoolSize());
+			properties.put("spring.datasource.hikari.minimum-idle", poolSizing.getMinimumIdle());
+		}
+		return properties;
+	}
+
 	@Override
 	public void onApplicationEvent(ApplicationEvent event) {
 		if (event instanceof ApplicationPreparedEvent) {
 			this.DEFERRED_LOG.switchTo(CfDataSourceEnvironmentPostProcessor.class);
+			ConfigurableEnvironment environment = ((ApplicationPreparedEvent) event).getApplicationContext()
+					.getEnvironment();
+			CfEnvDefaultsPropertySource.moveToLast(environment, POOL_PROPERTY_SOURCE_NAME);
+			PropertySource<?> poolPropertySource = environment.getPropertySources().get(POOL_PROPERTY_SOURCE_NAME);
+			Object maximumPoolSize = (poolPropertySource != null) ? poolPropertySource.getProperty(MAXIMUM_POOL_SIZE)
+					: null;
+			if (maximumPoolSize != null) {
+				DEFERRED_LOG.info("Setting " + MAXIMUM_POOL_SIZE + " to " + maximumPoolSize
+						+ " from the connection limit of the bound database shared by "
+						+ environment.getProperty(POOL_INSTANCE_COUNT, "1") + " instance(s) of the application");
+			}
 		}
-
 	}
 
 	/**
 	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
 	 */
 	private void increaseInvocationCount() {
-		synchronized (this) {
-			invocationCount++;
-		}
+		invocationCount.incrementAndGet();
 	}
 }
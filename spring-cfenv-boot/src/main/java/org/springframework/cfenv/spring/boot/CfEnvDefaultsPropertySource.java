@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySource;
+
+/**
+ * Property source whose properties are computed from {@code cfenv} settings when they
+ * are read rather than when the source is added. The post-processors run before
+ * application configuration files are loaded, so settings made there only become visible
+ * later. The properties are computed again whenever property sources have been added to
+ * or removed from the environment. Mostly used with the lowest precedence for defaults,
+ * see {@link #moveToLast}.
+ *
+ * @author agent
+ */
+class CfEnvDefaultsPropertySource extends EnumerablePropertySource<Function<PropertyResolver, Map<String, Object>>> {
+
+	private final ConfigurableEnvironment environment;
+
+	private final ThreadLocal<Boolean> resolving = new ThreadLocal<>();
+
+	private volatile Resolved resolved;
+
+	CfEnvDefaultsPropertySource(String name, ConfigurableEnvironment environment,
+			Function<PropertyResolver, Map<String, Object>> defaults) {
+		super(name, defaults);
+		this.environment = environment;
+	}
+
+	@Override
+	public String[] getPropertyNames() {
+		return getProperties().keySet().toArray(new String[0]);
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return getProperties().get(name);
+	}
+
+	private Map<String, Object> getProperties() {
+		if (this.resolving.get() != null) {
+			// Reading the settings goes through this source again
+			return Collections.emptyMap();
+		}
+		List<PropertySource<?>> propertySources = new ArrayList<>();
+		for (PropertySource<?> propertySource : this.environment.getPropertySources()) {
+			propertySources.add(propertySource);
+		}
+		Resolved resolved = this.resolved;
+		if (resolved == null || !resolved.isFor(propertySources)) {
+			this.resolving.set(Boolean.TRUE);
+			try {
+				resolved = new Resolved(propertySources, getSource().apply(this.environment));
+			}
+			finally {
+				this.resolving.remove();
+			}
+			this.resolved = resolved;
+		}
+		return resolved.properties;
+	}
+
+	/**
+	 * Move the named property source back to the lowest precedence. Configuration files
+	 * are added after the property sources that exist when they are loaded, so values set
+	 * there would otherwise be shadowed by the defaults.
+	 */
+	static void moveToLast(ConfigurableEnvironment environment, String name) {
+		MutablePropertySources propertySources = environment.getPropertySources();
+		PropertySource<?> propertySource = propertySources.get(name);
+		if (propertySource != null) {
+			propertySources.addLast(propertySource);
+		}
+	}
+
+	private static final class Resolved {
+
+		private final List<PropertySource<?>> propertySources;
+
+		private final Map<String, Object> properties;
+
+		private Resolved(List<PropertySource<?>> propertySources, Map<String, Object> properties) {
+			this.propertySources = propertySources;
+			this.properties = properties;
+		}
+
+		private boolean isFor(List<PropertySource<?>> propertySources) {
+			if (propertySources.size() != this.propertySources.size()) {
+				return false;
+			}
+			for (int i = 0; i < propertySources.size(); i++) {
+				if (propertySources.get(i) != this.propertySources.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import org.springframework.boot.logging.DeferredLog;
+
+/**
+ * {@link DeferredLog} that also keeps debug and higher messages in the
+ * {@link CfEnvStartupReport}, so they can be read from the {@code cfenv} endpoint
+ * whatever the configured log level.
+ *
+ * @author agent
+ */
+class CfEnvDeferredLog extends DeferredLog {
+
+	private final String processor;
+
+	CfEnvDeferredLog(Class<?> processor) {
+		this.processor = processor.getName();
+	}
+
+	@Override
+	public void debug(Object message) {
+		super.debug(message);
+		record("DEBUG", message, null);
+	}
+
+	@Override
+	public void debug(Object message, Throwable t) {
+		super.debug(message, t);
+		record("DEBUG", message, t);
+	}
+
+	@Override
+	public void info(Object message) {
+		super.info(message);
+		record("INFO", message, null);
+	}
+
+	@Override
+	public void info(Object message, Throwable t) {
+		super.info(message, t);
+		record("INFO", message, t);
+	}
+
+	@Override
+	public void warn(Object message) {
+		super.warn(message);
+		record("WARN", message, null);
+	}
+
+	@Override
+	public void warn(Object message, Throwable t) {
+		super.warn(message, t);
+		record("WARN", message, t);
+	}
+
+	@Override
+	public void error(Object message) {
+		super.error(message);
+		record("ERROR", message, null);
+	}
+
+	@Override
+	public void error(Object message, Throwable t) {
+		super.error(message, t);
+		record("ERROR", message, t);
+	}
+
+	private void record(String level, Object message, Throwable t) {
+		String text = level + " " + message;
+		if (t != null) {
+			text = text + " (" + t + ")";
+		}
+		CfEnvStartupReport.recordMessage(this.processor, text);
+	}
+
+}
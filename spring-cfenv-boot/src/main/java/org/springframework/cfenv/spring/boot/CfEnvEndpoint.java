@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.CfService;
+
+/**
+ * {@link Endpoint} exposing the bound services, with credential values redacted, and
+ * what the Spring CF Env environment post processors did with them during startup.
+ *
+ * @author agent
+ */
+@Endpoint(id = "cfenv")
+public class CfEnvEndpoint {
+
+	private static final String REDACTED = "******";
+
+	private final CfEnv cfEnv;
+
+	private final CfEnvStartupReport startupReport;
+
+	public CfEnvEndpoint() {
+		this(CfEnvSingleton.getCfEnvInstance());
+	}
+
+	public CfEnvEndpoint(CfEnv cfEnv) {
+		this.cfEnv = cfEnv;
+		// The report is cleared once the application is ready
+		this.startupReport = CfEnvStartupReport.snapshot();
+	}
+
+	@ReadOperation
+	public CfEnvDescriptor cfenv() {
+		List<ServiceDescriptor> services = new ArrayList<>();
+		for (CfService cfService : this.cfEnv.findAllServices()) {
+			services.add(new ServiceDescriptor(cfService, this.startupReport.getClaims(cfService.getName())));
+		}
+		List<ProcessorDescriptor> processors = new ArrayList<>();
+		for (CfEnvStartupReport.ProcessorRun run : this.startupReport.getRuns()) {
+			processors.add(new ProcessorDescriptor(run, this.startupReport.getMessages(run.getProcessor())));
+		}
+		return new CfEnvDescriptor(services, processors);
+	}
+
+	/**
+	 * Description of the bound services and the post processor runs.
+	 */
+	public static final class CfEnvDescriptor {
+
+		private final List<ServiceDescriptor> services;
+
+		private final List<ProcessorDescriptor> processors;
+
+		private CfEnvDescriptor(List<ServiceDescriptor> services, List<ProcessorDescriptor> processors) {
+			this.services = services;
+			this.processors = processors;
+		}
+
+		public List<ServiceDescriptor> getServices() {
+			return this.services;
+		}
+
+		public List<ProcessorDescriptor> getProcessors() {
+			return this.processors;
+		}
+
+	}
+
+	/**
+	 * Description of a bound service.
+	 */
+	public static final class ServiceDescriptor {
+
+		private final String name;
+
+		private final String label;
+
+		private final String plan;
+
+		private final List<String> tags;
+
+		private final Map<String, Object> credentials = new LinkedHashMap<>();
+
+		private final List<String> claimedBy;
+
+		private ServiceDescriptor(CfService cfService, List<String> claimedBy) {
+			this.name = cfService.getName();
+			this.label = cfService.getLabel();
+			this.plan = cfService.getPlan();
+			this.tags = cfService.getTags();
+			for (String key : cfService.getCredentials().getMap().keySet()) {
+				this.credentials.put(key, REDACTED);
+			}
+			this.claimedBy = claimedBy;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public String getLabel() {
+			return this.label;
+		}
+
+		public String getPlan() {
+			return this.plan;
+		}
+
+		public List<String> getTags() {
+			return this.tags;
+		}
+
+		public Map<String, Object> getCredentials() {
+			return this.credentials;
+		}
+
+		public List<String> getClaimedBy() {
+			return this.claimedBy;
+		}
+
+	}
+
+	/**
+	 * Description of a single run of an environment post processor.
+	 */
+	public static final class ProcessorDescriptor {
+
+		private final String name;
+
+		private final double durationMillis;
+
+		private final Map<String, List<String>> propertySources;
+
+		private final List<String> messages;
+
+		private ProcessorDescriptor(CfEnvStartupReport.ProcessorRun run, List<String> messages) {
+			this.name = run.getProcessor();
+			this.durationMillis = run.getDurationNanos() / 1_000_000.0;
+			this.propertySources = run.getPropertiesBySource();
+			this.messages = messages;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public double getDurationMillis() {
+			return this.durationMillis;
+		}
+
+		public Map<String, List<String>> getPropertySources() {
+			return this.propertySources;
+		}
+
+		public List<String> getMessages() {
+			return this.messages;
+		}
+
+	}
+
+}
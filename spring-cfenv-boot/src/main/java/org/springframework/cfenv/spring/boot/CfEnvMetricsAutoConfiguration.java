@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the {@link CfEnvMetricsBinder} when Micrometer is on the classpath. It can be
+ * switched off with {@code cfenv.metrics.enabled=false}.
+ *
+ * @author agent
+ */
+@Configuration
+@ConditionalOnClass(MeterBinder.class)
+@ConditionalOnProperty(prefix = "cfenv.metrics", name = "enabled", matchIfMissing = true)
+public class CfEnvMetricsAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public CfEnvMetricsBinder cfEnvMetricsBinder() {
+		return new CfEnvMetricsBinder();
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.cfenv.core.CfEnvMetrics;
+import org.springframework.cfenv.core.CfEnvMetrics.Lookup;
+import org.springframework.cfenv.core.CfEnvMetrics.Outcome;
+import org.springframework.cfenv.core.CfEnvMetrics.Timing;
+
+/**
+ * {@link MeterBinder} that exposes the statistics collected in {@link CfEnvMetrics}.
+ * Meters read the underlying counters when they are published, so nothing is added to
+ * the cost of parsing or lookups.
+ *
+ * @author agent
+ */
+public class CfEnvMetricsBinder implements MeterBinder {
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("cfenv.vcap.services.size", CfEnvMetrics.class, (metrics) -> CfEnvMetrics.getVcapServicesSize())
+				.description("Size of the VCAP_SERVICES payload")
+				.baseUnit("bytes")
+				.register(registry);
+		Gauge.builder("cfenv.services", CfEnvMetrics.class, (metrics) -> CfEnvMetrics.getServiceCount())
+				.description("Number of bound services")
+				.register(registry);
+		registerTimer(registry, "cfenv.parse", "Time taken to parse VCAP_SERVICES",
+				CfEnvMetrics.getParseTiming());
+		registerTimer(registry, "cfenv.jdbc.resolution", "Time taken to create JDBC services from bound services",
+				CfEnvMetrics.getJdbcResolutionTiming());
+		for (Lookup lookup : Lookup.values()) {
+			for (Outcome outcome : Outcome.values()) {
+				FunctionTimer.builder("cfenv.lookup", CfEnvMetrics.getLookupTiming(lookup, outcome),
+						Timing::getCount, Timing::getTotalNanos, TimeUnit.NANOSECONDS)
+						.description("Time taken to look up a bound service")
+						.tag("method", lookup.getMethod())
+						.tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+						.register(registry);
+			}
+		}
+	}
+
+	private void registerTimer(MeterRegistry registry, String name, String description, Timing timing) {
+		FunctionTimer.builder(name, timing, Timing::getCount, Timing::getTotalNanos, TimeUnit.NANOSECONDS)
+				.description(description)
+				.register(registry);
+	}
+
+}
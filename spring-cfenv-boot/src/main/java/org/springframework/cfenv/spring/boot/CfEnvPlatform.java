@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import org.springframework.boot.cloud.CloudPlatform;
+import org.springframework.cfenv.core.ServiceBindingVcapSource;
+import org.springframework.core.env.Environment;
+
+/**
+ * Decides whether the post-processors have bound services to read, either because the
+ * application runs in Cloud Foundry or because it has a service binding root.
+ *
+ * @author agent
+ */
+final class CfEnvPlatform {
+
+	private CfEnvPlatform() {
+	}
+
+	static boolean isActive(Environment environment) {
+		return CloudPlatform.CLOUD_FOUNDRY.isActive(environment) || ServiceBindingVcapSource.isActive();
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import org.apache.commons.logging.Log;
+
+import org.springframework.cfenv.core.CfService;
+import org.springframework.core.env.PropertyResolver;
+
+/**
+ * Connection pool sizes derived from the connection limit of a bound database service,
+ * shared by the JDBC and R2DBC post-processors.
+ *
+ * <p>The limit is read from a {@code max_connections} credential or from the
+ * {@code cfenv.jdbc.pool.plan-limits} table keyed by service plan, and divided by
+ * {@code cfenv.jdbc.pool.instance-count}.
+ *
+ * @author agent
+ */
+final class CfEnvPoolSizing {
+
+	private static final String[] MAX_CONNECTIONS_KEYS = { "max_connections", "maxConnections" };
+
+	private final int maxConnections;
+
+	private final int instanceCount;
+
+	private final int maximumPoolSize;
+
+	private final int minimumIdle;
+
+	private CfEnvPoolSizing(int maxConnections, int instanceCount, int maximumPoolSize, int minimumIdle) {
+		this.maxConnections = maxConnections;
+		this.instanceCount = instanceCount;
+		this.maximumPoolSize = maximumPoolSize;
+		this.minimumIdle = minimumIdle;
+	}
+
+	int getMaxConnections() {
+		return this.maxConnections;
+	}
+
+	int getInstanceCount() {
+		return this.instanceCount;
+	}
+
+	int getMaximumPoolSize() {
+		return this.maximumPoolSize;
+	}
+
+	int getMinimumIdle() {
+		return this.minimumIdle;
+	}
+
+	/**
+	 * Return the pool sizes for the given service, or {@code null} if the connection limit
+	 * of the database is not known.
+	 */
+	static CfEnvPoolSizing of(PropertyResolver environment, CfService cfService, Log log) {
+		Integer maxConnections = getMaxConnections(environment, cfService, log);
+		if (maxConnections == null) {
+			return null;
+		}
+		int instanceCount = Math.max(1,
+				environment.getProperty(CfDataSourceEnvironmentPostProcessor.POOL_INSTANCE_COUNT, Integer.class, 1));
+		int maximumPoolSize = Math.max(1, maxConnections / instanceCount);
+		int minimumIdle = Math.min(maximumPoolSize, environment.getProperty(
+				CfDataSourceEnvironmentPostProcessor.POOL_MINIMUM_IDLE, Integer.class, maximumPoolSize));
+		return new CfEnvPoolSizing(maxConnections, instanceCount, maximumPoolSize, minimumIdle);
+	}
+
+	/**
+	 * Return the connection limit of the database, taken from the service credentials if
+	 * the broker publishes it, otherwise from the configured limit for the service plan.
+	 */
+	private static Integer getMaxConnections(PropertyResolver environment, CfService cfService, Log log) {
+		String maxConnections = cfService.getCredentials().getString(MAX_CONNECTIONS_KEYS);
+		if (maxConnections != null) {
+			try {
+				return Integer.valueOf(maxConnections);
+			}
+			catch (NumberFormatException e) {
+				log.debug("Ignoring non numeric max_connections value [" + maxConnections
+						+ "] in bound service [" + cfService.getName() + "]");
+			}
+		}
+		String plan = cfService.getPlan();
+		if (plan != null) {
+			return environment.getProperty(CfDataSourceEnvironmentPostProcessor.POOL_PLAN_LIMITS + plan,
+					Integer.class);
+		}
+		return null;
+	}
+
+}
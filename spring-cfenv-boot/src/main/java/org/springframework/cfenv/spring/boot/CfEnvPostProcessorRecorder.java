@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cfenv.core.CfEnvFlightRecorder;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+
+/**
+ * Runs the body of an environment post processor, recording its duration and
+ * contributed properties in the {@link CfEnvStartupReport} and, when Flight Recorder is
+ * available, in an {@link EnvironmentPostProcessorEvent}.
+ *
+ * @author agent
+ */
+final class CfEnvPostProcessorRecorder {
+
+	private CfEnvPostProcessorRecorder() {
+	}
+
+	static void record(Class<?> processor, ConfigurableEnvironment environment, Runnable action,
+			String... propertySourceNames) {
+		EnvironmentPostProcessorEvent event = null;
+		if (CfEnvFlightRecorder.isAvailable()) {
+			event = new EnvironmentPostProcessorEvent();
+			event.begin();
+		}
+		long start = System.nanoTime();
+		boolean succeeded = false;
+		try {
+			action.run();
+			succeeded = true;
+		}
+		finally {
+			long duration = System.nanoTime() - start;
+			Map<String, List<String>> properties = getProperties(environment, propertySourceNames);
+			CfEnvStartupReport.recordRun(processor.getName(), duration, properties);
+			if (event != null) {
+				event.end();
+				if (event.shouldCommit()) {
+					event.processor = processor.getName();
+					event.propertyCount = properties.values().stream().mapToInt(List::size).sum();
+					event.succeeded = succeeded;
+					event.commit();
+				}
+			}
+		}
+	}
+
+	private static Map<String, List<String>> getProperties(ConfigurableEnvironment environment,
+			String... propertySourceNames) {
+		Map<String, List<String>> properties = new LinkedHashMap<>();
+		for (String name : propertySourceNames) {
+			PropertySource<?> propertySource = environment.getPropertySources().get(name);
+			if (propertySource instanceof EnumerablePropertySource) {
+				properties.put(name, Arrays.asList(((EnumerablePropertySource<?>) propertySource).getPropertyNames()));
+			}
+		}
+		return properties;
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Registers a {@link CfEnvPrewarmer} when {@code cfenv.prewarm.enabled} is {@code true}.
+ *
+ * <p>Each {@code DataSource} bean is primed with {@code cfenv.prewarm.connections}
+ * connections, by default the value of {@code spring.datasource.hikari.minimum-idle} or
+ * a single connection if that is not set.
+ *
+ * @author agent
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cfenv.prewarm", name = "enabled", havingValue = "true")
+public class CfEnvPrewarmAutoConfiguration {
+
+	public static final String CONNECTIONS = "cfenv.prewarm.connections";
+
+	@Bean
+	@ConditionalOnMissingBean
+	public static CfEnvPrewarmer cfEnvPrewarmer(Environment environment) {
+		int connections = environment.getProperty(CONNECTIONS, Integer.class,
+				environment.getProperty("spring.datasource.hikari.minimum-idle", Integer.class, 1));
+		return new CfEnvPrewarmer(CfEnvSingleton.getCfEnvInstance().findAllServices(), connections);
+	}
+
+}
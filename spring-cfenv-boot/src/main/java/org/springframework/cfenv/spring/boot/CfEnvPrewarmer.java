@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfEndpoint;
+import org.springframework.cfenv.core.CfService;
+
+/**
+ * Warms up the connections to bound services while the application context is being
+ * refreshed. The hosts of all bound services are resolved concurrently as soon as the
+ * instance is created, and each {@link DataSource} bean is primed with a number of
+ * connections as soon as it is initialized. Failures are logged and otherwise ignored,
+ * the application then pays the cost on first use as it would without pre-warming.
+ *
+ * <p>The work runs on at most four threads, whatever the number of connections, since a
+ * borrowed connection is held by its future rather than by a thread. The threads time out
+ * when idle. Once all singletons are instantiated the executor is shut down after the
+ * queued work completes, and {@code DataSource} beans initialized later are not primed.
+ *
+ * @author agent
+ * @see CfEnvPrewarmAutoConfiguration
+ */
+public class CfEnvPrewarmer implements BeanPostProcessor, SmartInitializingSingleton, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(CfEnvPrewarmer.class);
+
+	private static final int THREADS = 4;
+
+	private static final long KEEP_ALIVE_SECONDS = 1;
+
+	private final ThreadPoolExecutor executor;
+
+	private final int connections;
+
+	private final CompletableFuture<Map<String, InetAddress[]>> hostResolution;
+
+	private final List<CompletableFuture<Void>> poolPrimings = Collections.synchronizedList(new ArrayList<>());
+
+	/**
+	 * Create a new instance and start resolving the hosts of the given services.
+	 * @param cfServices the bound services
+	 * @param connections the number of connections to open in each {@link DataSource}
+	 */
+	public CfEnvPrewarmer(List<CfService> cfServices, int connections) {
+		this.executor = createExecutor();
+		this.connections = connections;
+		this.hostResolution = resolveHosts(getHosts(cfServices));
+	}
+
+	private static ThreadPoolExecutor createExecutor() {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), (runnable) -> {
+					Thread thread = new Thread(runnable, "cfenv-prewarm-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	static Set<String> getHosts(List<CfService> cfServices) {
+		Set<String> hosts = new LinkedHashSet<>();
+		for (CfService cfService : cfServices) {
+			CfCredentials cfCredentials = cfService.getCredentials();
+			for (CfEndpoint endpoint : cfCredentials.getEndpoints()) {
+				hosts.add(endpoint.getHost());
+			}
+			String host = cfCredentials.getHost();
+			if (host != null && host.length() > 0) {
+				hosts.add(host);
+			}
+		}
+		return hosts;
+	}
+
+	/**
+	 * Resolve the given hosts concurrently.
+	 * @param hosts the host names
+	 * @return a future completed with the addresses of the hosts that could be resolved
+	 */
+	public CompletableFuture<Map<String, InetAddress[]>> resolveHosts(Collection<String> hosts) {
+		Map<String, CompletableFuture<InetAddress[]>> resolutions = new LinkedHashMap<>();
+		for (String host : hosts) {
+			resolutions.put(host, CompletableFuture.supplyAsync(() -> resolve(host), this.executor));
+		}
+		return CompletableFuture.allOf(resolutions.values().toArray(new CompletableFuture<?>[0])).thenApply((done) -> {
+			Map<String, InetAddress[]> addresses = new LinkedHashMap<>();
+			resolutions.forEach((host, resolution) -> {
+				InetAddress[] hostAddresses = resolution.join();
+				if (hostAddresses != null) {
+					addresses.put(host, hostAddresses);
+				}
+			});
+			return addresses;
+		});
+	}
+
+	private InetAddress[] resolve(String host) {
+		try {
+			return InetAddress.getAllByName(host);
+		}
+		catch (Exception ex) {
+			logger.debug("Could not resolve host [" + host + "] while pre-warming", ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Open the given number of connections of the pool concurrently and return them, so
+	 * that the pool keeps them ready for the first requests.
+	 * @param dataSource the pool
+	 * @param connections the number of connections to open
+	 * @return a future completed once the connections have been returned to the pool
+	 */
+	public CompletableFuture<Void> primePool(DataSource dataSource, int connections) {
+		List<CompletableFuture<Connection>> borrows = new ArrayList<>();
+		for (int i = 0; i < connections; i++) {
+			borrows.add(CompletableFuture.supplyAsync(() -> borrow(dataSource), this.executor));
+		}
+		// Hold every connection until all are open so that the pool has to create them
+		return CompletableFuture.allOf(borrows.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+			for (CompletableFuture<Connection> borrow : borrows) {
+				Connection connection = borrow.join();
+				if (connection != null) {
+					try {
+						connection.close();
+					}
+					catch (Exception ex) {
+						logger.debug("Could not return pre-warmed connection", ex);
+					}
+				}
+			}
+		});
+	}
+
+	private Connection borrow(DataSource dataSource) {
+		try {
+			return dataSource.getConnection();
+		}
+		catch (Exception ex) {
+			logger.debug("Could not open connection while pre-warming", ex);
+			return null;
+		}
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource && this.connections > 0 && !this.executor.isShutdown()) {
+			this.poolPrimings.add(primePool((DataSource) bean, this.connections));
+		}
+		return bean;
+	}
+
+	/**
+	 * Return the resolution of the hosts of the bound services started on creation.
+	 * @return a future completed with the addresses of the hosts that could be resolved
+	 */
+	public CompletableFuture<Map<String, InetAddress[]>> getHostResolution() {
+		return this.hostResolution;
+	}
+
+	/**
+	 * Return a future completed once the host resolution and the priming of every
+	 * {@link DataSource} initialized so far are done.
+	 * @return the future
+	 */
+	public CompletableFuture<Void> getCompletion() {
+		List<CompletableFuture<?>> futures = new ArrayList<>(this.poolPrimings);
+		futures.add(this.hostResolution);
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	ThreadPoolExecutor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Stop accepting work once the singletons, and so the eagerly created
+	 * {@link DataSource} beans, are instantiated. Work already queued still completes.
+	 */
+	@Override
+	public void afterSingletonsInstantiated() {
+		this.executor.shutdown();
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+
+}
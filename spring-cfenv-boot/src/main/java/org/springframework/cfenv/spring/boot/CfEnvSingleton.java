@@ -34,4 +34,12 @@ public final class CfEnvSingleton {
 		}
 		return INSTANCE;
 	}
+
+	/**
+	 * Discard the shared instance so that the next call re-reads the environment. For
+	 * tests that change {@code VCAP_SERVICES} between runs.
+	 */
+	synchronized static void reset() {
+		INSTANCE = null;
+	}
 }
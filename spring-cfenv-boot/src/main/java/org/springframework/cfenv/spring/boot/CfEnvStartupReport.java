@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects what the Spring CF Env environment post processors did during startup: how
+ * long each one ran, which properties it contributed, which services it claimed and the
+ * messages it logged. {@link CfEnvEndpoint} takes a {@link #snapshot() snapshot} when it
+ * is created, and {@link CfEnvStartupReportListener} clears the report once the
+ * application is ready, so that restarts and refreshes do not accumulate entries. The
+ * number of runs and messages kept is capped.
+ *
+ * @author agent
+ */
+final class CfEnvStartupReport {
+
+	static final int MAX_RUNS = 100;
+
+	static final int MAX_MESSAGES = 100;
+
+	private static final CfEnvStartupReport CURRENT = new CfEnvStartupReport();
+
+	private final List<ProcessorRun> runs = new ArrayList<>();
+
+	private final Map<String, List<String>> claims = new LinkedHashMap<>();
+
+	private final Map<String, List<String>> messages = new LinkedHashMap<>();
+
+	private CfEnvStartupReport() {
+	}
+
+	static void recordRun(String processor, long durationNanos, Map<String, List<String>> propertiesBySource) {
+		synchronized (CURRENT) {
+			if (CURRENT.runs.size() >= MAX_RUNS) {
+				CURRENT.runs.remove(0);
+			}
+			CURRENT.runs.add(new ProcessorRun(processor, durationNanos, propertiesBySource));
+		}
+	}
+
+	static void recordClaim(String serviceName, String claimedBy) {
+		synchronized (CURRENT) {
+			List<String> claims = CURRENT.claims.computeIfAbsent(serviceName, (name) -> new ArrayList<>());
+			if (!claims.contains(claimedBy)) {
+				claims.add(claimedBy);
+			}
+		}
+	}
+
+	static void recordMessage(String processor, String message) {
+		synchronized (CURRENT) {
+			List<String> messages = CURRENT.messages.computeIfAbsent(processor, (name) -> new ArrayList<>());
+			if (messages.size() >= MAX_MESSAGES) {
+				messages.remove(0);
+			}
+			messages.add(message);
+		}
+	}
+
+	/**
+	 * Return a copy of the report as recorded so far.
+	 * @return the snapshot
+	 */
+	static CfEnvStartupReport snapshot() {
+		CfEnvStartupReport snapshot = new CfEnvStartupReport();
+		synchronized (CURRENT) {
+			snapshot.runs.addAll(CURRENT.runs);
+			CURRENT.claims.forEach((name, claims) -> snapshot.claims.put(name, new ArrayList<>(claims)));
+			CURRENT.messages.forEach((name, messages) -> snapshot.messages.put(name, new ArrayList<>(messages)));
+		}
+		return snapshot;
+	}
+
+	static void clear() {
+		synchronized (CURRENT) {
+			CURRENT.runs.clear();
+			CURRENT.claims.clear();
+			CURRENT.messages.clear();
+		}
+	}
+
+	List<ProcessorRun> getRuns() {
+		return Collections.unmodifiableList(this.runs);
+	}
+
+	List<String> getClaims(String serviceName) {
+		List<String> claims = this.claims.get(serviceName);
+		return (claims != null) ? Collections.unmodifiableList(claims) : Collections.emptyList();
+	}
+
+	List<String> getMessages(String processor) {
+		List<String> messages = this.messages.get(processor);
+		return (messages != null) ? Collections.unmodifiableList(messages) : Collections.emptyList();
+	}
+
+	static final class ProcessorRun {
+
+		private final String processor;
+
+		private final long durationNanos;
+
+		private final Map<String, List<String>> propertiesBySource;
+
+		ProcessorRun(String processor, long durationNanos, Map<String, List<String>> propertiesBySource) {
+			this.processor = processor;
+			this.durationNanos = durationNanos;
+			this.propertiesBySource = propertiesBySource;
+		}
+
+		String getProcessor() {
+			return this.processor;
+		}
+
+		long getDurationNanos() {
+			return this.durationNanos;
+		}
+
+		Map<String, List<String>> getPropertiesBySource() {
+			return this.propertiesBySource;
+		}
+
+	}
+
+}
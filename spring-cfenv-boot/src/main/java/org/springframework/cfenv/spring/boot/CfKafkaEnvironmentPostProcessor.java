@@ -0,0 +1,290 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLog;
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfEndpoint;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+
+/**
+ * Sets {@code spring.kafka} properties from the single bound Kafka service, detected by a
+ * {@code kafka} tag, a label starting with {@code kafka} or {@code cloudkarafka}, or a
+ * {@code kafka} URI, typically a user-provided service.
+ *
+ * <p>The broker list is read from the {@code brokers}, {@code bootstrap_servers} or
+ * {@code hosts} credential, either a list or a comma separated string. If the credentials
+ * contain a username and password, SASL is configured with the {@code sasl_mechanism}
+ * (default {@code PLAIN}) and {@code security_protocol} (default {@code SASL_SSL})
+ * credentials.
+ *
+ * <p>Producer and consumer tuning is opt-in. Setting {@code cfenv.kafka.producer.profile}
+ * to {@code throughput} or {@code latency} sets {@code linger.ms}, {@code batch.size} and
+ * {@code compression.type}; setting {@code cfenv.kafka.consumer.profile} sets the fetch
+ * sizes and {@code max.poll.records}. Each value can be overridden, for example with
+ * {@code cfenv.kafka.producer.linger-ms}. Tuning properties have the lowest precedence,
+ * so values set by the application still apply. The {@code cfenv.kafka} settings are read
+ * when the {@code spring.kafka} properties are, so they can also be set in application
+ * configuration files.
+ *
+ * @author agent
+ */
+public class CfKafkaEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered,
+		ApplicationListener<ApplicationEvent> {
+
+	public static final String PRODUCER_PROPERTY_PREFIX = "cfenv.kafka.producer.";
+
+	public static final String CONSUMER_PROPERTY_PREFIX = "cfenv.kafka.consumer.";
+
+	private static final String[] KAFKA_LABELS = { "kafka", "cloudkarafka" };
+
+	private static final String[] BROKER_KEYS = { "brokers", "bootstrap_servers", "bootstrapServers", "hosts" };
+
+	private static final int DEFAULT_PORT = 9092;
+
+	private static final String PROPERTY_SOURCE_NAME = "cfenvkafka";
+
+	private static final String TUNING_PROPERTY_SOURCE_NAME = "cfenvkafkatuning";
+
+	private static final Map<String, String> PRODUCER_SETTINGS = new LinkedHashMap<>();
+
+	private static final Map<String, Map<String, String>> PRODUCER_PROFILES = new LinkedHashMap<>();
+
+	private static final Map<String, String> CONSUMER_SETTINGS = new LinkedHashMap<>();
+
+	private static final Map<String, Map<String, String>> CONSUMER_PROFILES = new LinkedHashMap<>();
+
+	static {
+		PRODUCER_SETTINGS.put("linger-ms", "spring.kafka.producer.properties.linger.ms");
+		PRODUCER_SETTINGS.put("batch-size", "spring.kafka.producer.batch-size");
+		PRODUCER_SETTINGS.put("compression-type", "spring.kafka.producer.compression-type");
+		PRODUCER_PROFILES.put("throughput", profile(PRODUCER_SETTINGS, "20", "131072", "lz4"));
+		PRODUCER_PROFILES.put("latency", profile(PRODUCER_SETTINGS, "0", "16384", "none"));
+
+		CONSUMER_SETTINGS.put("fetch-min-size", "spring.kafka.consumer.fetch-min-size");
+		CONSUMER_SETTINGS.put("fetch-max-wait", "spring.kafka.consumer.fetch-max-wait");
+		CONSUMER_SETTINGS.put("max-partition-fetch-bytes",
+				"spring.kafka.consumer.properties.max.partition.fetch.bytes");
+		CONSUMER_SETTINGS.put("max-poll-records", "spring.kafka.consumer.max-poll-records");
+		CONSUMER_PROFILES.put("throughput", profile(CONSUMER_SETTINGS, "65536", "500ms", "4194304", "1000"));
+		CONSUMER_PROFILES.put("latency", profile(CONSUMER_SETTINGS, "1", "50ms", "1048576", "100"));
+	}
+
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfKafkaEnvironmentPostProcessor.class);
+
+	private static final AtomicInteger invocationCount = new AtomicInteger();
+
+	// Before ConfigFileApplicationListener so values there can use these ones
+	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
+
+	@Override
+	public int getOrder() {
+		return this.order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME, TUNING_PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
+		increaseInvocationCount();
+		if (CfEnvPlatform.isActive(environment)) {
+			CfService cfService = findKafkaService();
+			if (cfService != null) {
+				bindKafkaService(environment, cfService);
+			}
+		}
+		else {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Not setting spring.kafka properties, not in Cloud Foundry Environment");
+			}
+		}
+	}
+
+	/**
+	 * Return the single bound Kafka service with at least one broker, or {@code null}.
+	 */
+	private CfService findKafkaService() {
+		List<CfService> kafkaServices = CfEnvSingleton.getCfEnvInstance().streamServices()
+				.filter(this::isKafkaService).collect(Collectors.toList());
+		if (kafkaServices.size() != 1) {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Skipping execution of CfKafkaEnvironmentPostProcessor. Found "
+						+ kafkaServices.size() + " Kafka services, expected exactly one");
+			}
+			return null;
+		}
+		CfService cfService = kafkaServices.get(0);
+		if (cfService.getCredentials().getEndpoints(DEFAULT_PORT, BROKER_KEYS).isEmpty()) {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Skipping execution of CfKafkaEnvironmentPostProcessor. No brokers found in "
+						+ "bound service [" + cfService.getName() + "]");
+			}
+			return null;
+		}
+		return cfService;
+	}
+
+	private void bindKafkaService(ConfigurableEnvironment environment, CfService cfService) {
+		CfCredentials cfCredentials = cfService.getCredentials();
+		List<CfEndpoint> brokers = cfCredentials.getEndpoints(DEFAULT_PORT, BROKER_KEYS);
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("spring.kafka.bootstrap-servers",
+				brokers.stream().map(CfEndpoint::toString).collect(Collectors.joining(",")));
+		addSecurityProperties(cfCredentials, properties);
+
+		MutablePropertySources propertySources = environment.getPropertySources();
+		if (propertySources.contains(
+				CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+			propertySources.addAfter(
+					CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME,
+					new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+		}
+		else {
+			propertySources
+					.addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+		}
+
+		CfEnvDefaultsPropertySource tuningPropertySource = new CfEnvDefaultsPropertySource(
+				TUNING_PROPERTY_SOURCE_NAME, environment, this::getTuningProperties);
+		// Fail fast on an unknown profile that is already set
+		tuningPropertySource.getPropertyNames();
+		// Lowest precedence so that values configured by the application win
+		propertySources.addLast(tuningPropertySource);
+
+		CfEnvStartupReport.recordClaim(cfService.getName(), getClass().getName());
+		if (invocationCount.get() == 1) {
+			DEFERRED_LOG.info("Setting spring.kafka properties from bound service ["
+					+ cfService.getName() + "]");
+		}
+	}
+
+	private boolean isKafkaService(CfService cfService) {
+		if (cfService.existsByTagIgnoreCase("kafka") || cfService.existsByUriSchemeStartsWith("kafka")) {
+			return true;
+		}
+		for (String label : KAFKA_LABELS) {
+			if (cfService.existsByLabelStartsWith(label)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addSecurityProperties(CfCredentials cfCredentials, Map<String, Object> properties) {
+		String securityProtocol = cfCredentials.getString("security_protocol", "securityProtocol");
+		String username = cfCredentials.getUsername();
+		String password = cfCredentials.getPassword();
+		if (username != null && password != null) {
+			String mechanism = cfCredentials.getString("sasl_mechanism", "saslMechanism");
+			mechanism = (mechanism != null) ? mechanism.toUpperCase(Locale.ROOT) : "PLAIN";
+			String loginModule = mechanism.startsWith("SCRAM-")
+					? "org.apache.kafka.common.security.scram.ScramLoginModule"
+					: "org.apache.kafka.common.security.plain.PlainLoginModule";
+			properties.put("spring.kafka.properties.security.protocol",
+					(securityProtocol != null) ? securityProtocol : "SASL_SSL");
+			properties.put("spring.kafka.properties.sasl.mechanism", mechanism);
+			properties.put("spring.kafka.properties.sasl.jaas.config", loginModule + " required username=\""
+					+ escapeJaasValue(username) + "\" password=\"" + escapeJaasValue(password) + "\";");
+		}
+		else if (securityProtocol != null) {
+			properties.put("spring.kafka.properties.security.protocol", securityProtocol);
+		}
+	}
+
+	private static String escapeJaasValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private Map<String, Object> getTuningProperties(PropertyResolver environment) {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		addTuningProperties(environment, PRODUCER_PROPERTY_PREFIX, PRODUCER_SETTINGS, PRODUCER_PROFILES, properties);
+		addTuningProperties(environment, CONSUMER_PROPERTY_PREFIX, CONSUMER_SETTINGS, CONSUMER_PROFILES, properties);
+		return properties;
+	}
+
+	private void addTuningProperties(PropertyResolver environment, String prefix, Map<String, String> settings,
+			Map<String, Map<String, String>> profiles, Map<String, Object> properties) {
+		String profileName = environment.getProperty(prefix + "profile");
+		Map<String, String> profile = Collections.emptyMap();
+		if (profileName != null) {
+			profile = profiles.get(profileName.toLowerCase(Locale.ROOT));
+			if (profile == null) {
+				throw new IllegalArgumentException("Unknown " + prefix + "profile [" + profileName
+						+ "], expected one of " + profiles.keySet());
+			}
+		}
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			String value = environment.getProperty(prefix + setting.getKey(), profile.get(setting.getKey()));
+			if (value != null) {
+				properties.put(setting.getValue(), value);
+			}
+		}
+	}
+
+	private static Map<String, String> profile(Map<String, String> settings, String... values) {
+		Map<String, String> profile = new LinkedHashMap<>();
+		int index = 0;
+		for (String setting : settings.keySet()) {
+			profile.put(setting, values[index++]);
+		}
+		return profile;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ApplicationPreparedEvent) {
+			this.DEFERRED_LOG.switchTo(CfKafkaEnvironmentPostProcessor.class);
+			CfEnvDefaultsPropertySource.moveToLast(
+					((ApplicationPreparedEvent) event).getApplicationContext().getEnvironment(),
+					TUNING_PROPERTY_SOURCE_NAME);
+		}
+	}
+
+	/**
+	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
+	 */
+	private void increaseInvocationCount() {
+		invocationCount.incrementAndGet();
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLog;
+import org.springframework.cfenv.r2dbc.CfR2dbcEnv;
+import org.springframework.cfenv.r2dbc.CfR2dbcService;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySource;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Sets {@code spring.r2dbc} properties from the single bound database service, when
+ * {@code spring-cfenv-r2dbc} and the R2DBC SPI are on the class path.
+ *
+ * <p>Pool sizes are derived from the connection limit of the database exactly as for
+ * {@link CfDataSourceEnvironmentPostProcessor}, using the same {@code cfenv.jdbc.pool}
+ * properties, and set as the {@code r2dbc-pool} maximum and initial size with the lowest
+ * precedence. Like the JDBC properties, they are computed when they are read, so
+ * {@code cfenv.jdbc} settings can be made in application configuration files.
+ *
+ * @author agent
+ */
+public class CfR2dbcEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered,
+		ApplicationListener<ApplicationEvent> {
+
+	private static final String PROPERTY_SOURCE_NAME = "cfenvr2dbc";
+
+	private static final String POOL_PROPERTY_SOURCE_NAME = "cfenvr2dbcpool";
+
+	private static final String MAX_SIZE = "spring.r2dbc.pool.max-size";
+
+	private static final boolean R2DBC_PRESENT = ClassUtils.isPresent("org.springframework.cfenv.r2dbc.CfR2dbcEnv",
+			CfR2dbcEnvironmentPostProcessor.class.getClassLoader())
+			&& ClassUtils.isPresent("io.r2dbc.spi.ConnectionFactoryOptions",
+					CfR2dbcEnvironmentPostProcessor.class.getClassLoader());
+
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfR2dbcEnvironmentPostProcessor.class);
+
+	private static final AtomicInteger invocationCount = new AtomicInteger();
+
+	// Before ConfigFileApplicationListener so values there can use these ones
+	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
+
+	@Override
+	public int getOrder() {
+		return this.order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME, POOL_PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
+		increaseInvocationCount();
+		if (!R2DBC_PRESENT) {
+			return;
+		}
+		if (CfEnvPlatform.isActive(environment)) {
+			R2dbcPropertiesBinder.bind(environment);
+		}
+		else {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Not setting spring.r2dbc.url, not in Cloud Foundry Environment");
+			}
+		}
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ApplicationPreparedEvent) {
+			this.DEFERRED_LOG.switchTo(CfR2dbcEnvironmentPostProcessor.class);
+			ConfigurableEnvironment environment = ((ApplicationPreparedEvent) event).getApplicationContext()
+					.getEnvironment();
+			CfEnvDefaultsPropertySource.moveToLast(environment, POOL_PROPERTY_SOURCE_NAME);
+			PropertySource<?> poolPropertySource = environment.getPropertySources().get(POOL_PROPERTY_SOURCE_NAME);
+			Object maxSize = (poolPropertySource != null) ? poolPropertySource.getProperty(MAX_SIZE) : null;
+			if (maxSize != null) {
+				DEFERRED_LOG.info("Setting " + MAX_SIZE + " to " + maxSize
+						+ " from the connection limit of the bound database shared by "
+						+ environment.getProperty(CfDataSourceEnvironmentPostProcessor.POOL_INSTANCE_COUNT, "1")
+						+ " instance(s) of the application");
+			}
+		}
+	}
+
+	/**
+	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
+	 */
+	private void increaseInvocationCount() {
+		invocationCount.incrementAndGet();
+	}
+
+	/**
+	 * Inner class so that the R2DBC types are only loaded when they are present.
+	 */
+	private static final class R2dbcPropertiesBinder {
+
+		private R2dbcPropertiesBinder() {
+		}
+
+		static void bind(ConfigurableEnvironment environment) {
+			CfR2dbcService cfR2dbcService = findR2dbcService(environment);
+			if (cfR2dbcService != null) {
+				bindR2dbcService(environment, cfR2dbcService);
+			}
+		}
+
+		/**
+		 * Return the single bound database service, or {@code null}.
+		 */
+		private static CfR2dbcService findR2dbcService(ConfigurableEnvironment environment) {
+			CfR2dbcService cfR2dbcService = null;
+			try {
+				cfR2dbcService = new CfR2dbcEnv(environment::getProperty).findR2dbcService();
+			}
+			catch (Exception e) {
+				if (invocationCount.get() == 1) {
+					DEFERRED_LOG.debug("Skipping execution of CfR2dbcEnvironmentPostProcessor. " + e.getMessage());
+				}
+			}
+			return cfR2dbcService;
+		}
+
+		private static void bindR2dbcService(ConfigurableEnvironment environment, CfR2dbcService cfR2dbcService) {
+			String serviceName = cfR2dbcService.getName();
+			CfEnvDefaultsPropertySource propertySource = new CfEnvDefaultsPropertySource(PROPERTY_SOURCE_NAME,
+					environment, (resolver) -> getConnectionProperties(resolver, serviceName));
+			MutablePropertySources propertySources = environment.getPropertySources();
+			if (propertySources.contains(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+				propertySources.addAfter(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, propertySource);
+			}
+			else {
+				propertySources.addFirst(propertySource);
+			}
+			CfEnvStartupReport.recordClaim(serviceName, CfR2dbcEnvironmentPostProcessor.class.getName()
+					+ " using " + cfR2dbcService.getR2dbcUrlCreatorType().getName());
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.info("Setting spring.r2dbc.url property from bound service [" + serviceName + "]");
+			}
+			// Lowest precedence so that pool sizes configured by the application win
+			propertySources.addLast(new CfEnvDefaultsPropertySource(POOL_PROPERTY_SOURCE_NAME, environment,
+					(resolver) -> getPoolSizeProperties(resolver, cfR2dbcService)));
+		}
+
+		/**
+		 * Return the connection properties of the named service. The R2DBC URL is created
+		 * again from the current environment, so that {@code cfenv.jdbc.service} settings
+		 * made in application configuration files apply.
+		 */
+		private static Map<String, Object> getConnectionProperties(PropertyResolver resolver, String serviceName) {
+			CfR2dbcService cfR2dbcService = new CfR2dbcEnv(resolver::getProperty).findR2dbcServiceByName(serviceName);
+			Map<String, Object> properties = new LinkedHashMap<>();
+			properties.put("spring.r2dbc.url", cfR2dbcService.getUrl());
+			properties.put("spring.r2dbc.username", cfR2dbcService.getUsername());
+			properties.put("spring.r2dbc.password", cfR2dbcService.getPassword());
+			return properties;
+		}
+
+		private static Map<String, Object> getPoolSizeProperties(PropertyResolver resolver,
+				CfR2dbcService cfR2dbcService) {
+			CfEnvPoolSizing poolSizing = CfEnvPoolSizing.of(resolver, cfR2dbcService, DEFERRED_LOG);
+			Map<String, Object> properties = new LinkedHashMap<>();
+			if (poolSizing != null) {
+				properties.put(MAX_SIZE, poolSizing.getMaximumPoolSize());
+				properties.put("spring.r2dbc.pool.initial-size", poolSizing.getMinimumIdle());
+			}
+			return properties;
+		}
+
+	}
+
+}
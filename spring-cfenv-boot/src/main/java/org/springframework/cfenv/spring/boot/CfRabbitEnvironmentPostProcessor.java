@@ -0,0 +1,327 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLog;
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfEndpoint;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.cfenv.core.UriInfo;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+
+/**
+ * Sets {@code spring.rabbitmq} properties from the single bound RabbitMQ service,
+ * detected by a {@code rabbitmq} tag, a label starting with {@code p-rabbitmq},
+ * {@code p.rabbitmq}, {@code rabbitmq} or {@code cloudamqp}, or an {@code amqp} or
+ * {@code amqps} URI.
+ *
+ * <p>Credentials are read from the {@code protocols.amqp+ssl} section if the broker
+ * publishes one, then from {@code protocols.amqp} and finally from the top level. All
+ * node URIs under {@code uris} are set as {@code spring.rabbitmq.addresses}, so that the
+ * client spreads connections over the cluster and fails over to the other nodes.
+ *
+ * <p>The channel cache size, listener prefetch count and publisher confirms are set with
+ * the lowest precedence from {@code cfenv.rabbitmq.cache.channel-size} (default 50),
+ * {@code cfenv.rabbitmq.prefetch} (default 250) and
+ * {@code cfenv.rabbitmq.publisher-confirms} (not set by default). These settings are read
+ * when the {@code spring.rabbitmq} properties are, so they can also be set in application
+ * configuration files.
+ *
+ * @author agent
+ */
+public class CfRabbitEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered,
+		ApplicationListener<ApplicationEvent> {
+
+	public static final String PROPERTY_PREFIX = "cfenv.rabbitmq.";
+
+	public static final String CHANNEL_CACHE_SIZE = PROPERTY_PREFIX + "cache.channel-size";
+
+	public static final String PREFETCH = PROPERTY_PREFIX + "prefetch";
+
+	public static final String PUBLISHER_CONFIRMS = PROPERTY_PREFIX + "publisher-confirms";
+
+	private static final String[] RABBIT_LABELS = { "p-rabbitmq", "p.rabbitmq", "rabbitmq", "cloudamqp" };
+
+	private static final String[] AMQP_SCHEMES = { "amqp", "amqps" };
+
+	private static final int DEFAULT_PORT = 5672;
+
+	private static final int DEFAULT_SSL_PORT = 5671;
+
+	private static final int DEFAULT_CHANNEL_CACHE_SIZE = 50;
+
+	private static final int DEFAULT_PREFETCH = 250;
+
+	private static final String PROPERTY_SOURCE_NAME = "cfenvrabbit";
+
+	private static final String DEFAULTS_PROPERTY_SOURCE_NAME = "cfenvrabbitdefaults";
+
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfRabbitEnvironmentPostProcessor.class);
+
+	private static final AtomicInteger invocationCount = new AtomicInteger();
+
+	// Before ConfigFileApplicationListener so values there can use these ones
+	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
+
+	@Override
+	public int getOrder() {
+		return this.order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME, DEFAULTS_PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
+		increaseInvocationCount();
+		if (CfEnvPlatform.isActive(environment)) {
+			CfService cfService = findRabbitService();
+			if (cfService != null) {
+				bindRabbitService(environment, cfService);
+			}
+		}
+		else {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Not setting spring.rabbitmq properties, not in Cloud Foundry Environment");
+			}
+		}
+	}
+
+	/**
+	 * Return the single bound RabbitMQ service, or {@code null}.
+	 */
+	private CfService findRabbitService() {
+		List<CfService> rabbitServices = CfEnvSingleton.getCfEnvInstance().streamServices()
+				.filter(this::isRabbitService).collect(Collectors.toList());
+		if (rabbitServices.size() != 1) {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Skipping execution of CfRabbitEnvironmentPostProcessor. Found "
+						+ rabbitServices.size() + " RabbitMQ services, expected exactly one");
+			}
+			return null;
+		}
+		return rabbitServices.get(0);
+	}
+
+	private void bindRabbitService(ConfigurableEnvironment environment, CfService cfService) {
+		Map<String, Object> properties = getConnectionProperties(cfService.getCredentials());
+		if (properties.containsKey("spring.rabbitmq.addresses")) {
+			MutablePropertySources propertySources = environment.getPropertySources();
+			if (propertySources.contains(
+					CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+				propertySources.addAfter(
+						CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME,
+						new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+			}
+			else {
+				propertySources
+						.addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+			}
+			// Lowest precedence so that values configured by the application win
+			propertySources.addLast(
+					new CfEnvDefaultsPropertySource(DEFAULTS_PROPERTY_SOURCE_NAME, environment, this::getDefaults));
+
+			CfEnvStartupReport.recordClaim(cfService.getName(), getClass().getName());
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.info("Setting spring.rabbitmq properties from bound service ["
+						+ cfService.getName() + "]");
+			}
+		}
+		else if (invocationCount.get() == 1) {
+			DEFERRED_LOG.debug("Skipping execution of CfRabbitEnvironmentPostProcessor. No host found in "
+					+ "bound service [" + cfService.getName() + "]");
+		}
+	}
+
+	private boolean isRabbitService(CfService cfService) {
+		if (cfService.existsByTagIgnoreCase("rabbitmq") || cfService.existsByUriSchemeStartsWith(AMQP_SCHEMES)) {
+			return true;
+		}
+		for (String label : RABBIT_LABELS) {
+			if (cfService.existsByLabelStartsWith(label)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Map<String, Object> getConnectionProperties(CfCredentials cfCredentials) {
+		CfCredentials credentials = getProtocolCredentials(cfCredentials, "amqp+ssl");
+		boolean ssl = (credentials != null);
+		if (credentials == null) {
+			credentials = getProtocolCredentials(cfCredentials, "amqp");
+		}
+		if (credentials == null) {
+			credentials = cfCredentials;
+		}
+		List<UriInfo> uris = getUris(credentials);
+		if (uris.isEmpty() && credentials != cfCredentials) {
+			uris = getUris(cfCredentials);
+		}
+		if (!uris.isEmpty() && "amqps".equals(uris.get(0).getScheme())) {
+			ssl = true;
+		}
+		if (!ssl) {
+			ssl = Boolean.parseBoolean(credentials.getString("ssl"));
+		}
+		String port = credentials.getString("port");
+		int defaultPort = (port != null) ? Integer.parseInt(port) : (ssl ? DEFAULT_SSL_PORT : DEFAULT_PORT);
+
+		List<String> addresses = new ArrayList<>();
+		for (UriInfo uri : uris) {
+			if (uri.getHost() != null) {
+				addresses.add(new CfEndpoint(uri.getHost(), (uri.getPort() != -1) ? uri.getPort() : defaultPort)
+						.toString());
+			}
+		}
+		if (addresses.isEmpty()) {
+			for (CfEndpoint endpoint : credentials.getEndpoints(defaultPort, "hosts", "hostnames", "host", "hostname")) {
+				addresses.add(endpoint.toString());
+			}
+		}
+
+		Map<String, Object> properties = new LinkedHashMap<>();
+		if (addresses.isEmpty()) {
+			return properties;
+		}
+		UriInfo uri = uris.isEmpty() ? null : uris.get(0);
+		properties.put("spring.rabbitmq.addresses", String.join(",", addresses));
+		String username = credentials.getString("username", "user");
+		if (username == null && uri != null) {
+			username = uri.getUsername();
+		}
+		if (username != null) {
+			properties.put("spring.rabbitmq.username", username);
+		}
+		String password = credentials.getString("password");
+		if (password == null && uri != null) {
+			password = uri.getPassword();
+		}
+		if (password != null) {
+			properties.put("spring.rabbitmq.password", password);
+		}
+		String virtualHost = credentials.getString("vhost");
+		if (virtualHost == null && uri != null && uri.getPath() != null) {
+			virtualHost = decode(uri.getPath());
+		}
+		if (virtualHost != null) {
+			properties.put("spring.rabbitmq.virtual-host", virtualHost);
+		}
+		if (ssl) {
+			properties.put("spring.rabbitmq.ssl.enabled", true);
+		}
+		return properties;
+	}
+
+	@SuppressWarnings("unchecked")
+	private CfCredentials getProtocolCredentials(CfCredentials cfCredentials, String protocol) {
+		Object protocols = cfCredentials.getMap().get("protocols");
+		if (protocols instanceof Map) {
+			Object protocolCredentials = ((Map<String, Object>) protocols).get(protocol);
+			if (protocolCredentials instanceof Map) {
+				return new CfCredentials((Map<String, Object>) protocolCredentials);
+			}
+		}
+		return null;
+	}
+
+	private List<UriInfo> getUris(CfCredentials cfCredentials) {
+		List<UriInfo> uris = new ArrayList<>();
+		Object uriList = cfCredentials.getMap().get("uris");
+		if (uriList instanceof List) {
+			for (Object uri : (List<?>) uriList) {
+				if (uri != null) {
+					uris.add(new UriInfo(uri.toString()));
+				}
+			}
+		}
+		if (uris.isEmpty()) {
+			String uri = cfCredentials.getUri(AMQP_SCHEMES);
+			if (uri != null) {
+				uris.add(new UriInfo(uri));
+			}
+		}
+		return uris;
+	}
+
+	private Map<String, Object> getDefaults(PropertyResolver environment) {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("spring.rabbitmq.cache.channel.size",
+				environment.getProperty(CHANNEL_CACHE_SIZE, Integer.class, DEFAULT_CHANNEL_CACHE_SIZE));
+		int prefetch = environment.getProperty(PREFETCH, Integer.class, DEFAULT_PREFETCH);
+		properties.put("spring.rabbitmq.listener.simple.prefetch", prefetch);
+		properties.put("spring.rabbitmq.listener.direct.prefetch", prefetch);
+		Boolean publisherConfirms = environment.getProperty(PUBLISHER_CONFIRMS, Boolean.class);
+		if (publisherConfirms != null) {
+			properties.put("spring.rabbitmq.publisher-confirms", publisherConfirms);
+		}
+		return properties;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ApplicationPreparedEvent) {
+			this.DEFERRED_LOG.switchTo(CfRabbitEnvironmentPostProcessor.class);
+			CfEnvDefaultsPropertySource.moveToLast(
+					((ApplicationPreparedEvent) event).getApplicationContext().getEnvironment(),
+					DEFAULTS_PROPERTY_SOURCE_NAME);
+		}
+	}
+
+	/**
+	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
+	 */
+	private void increaseInvocationCount() {
+		invocationCount.incrementAndGet();
+	}
+
+}
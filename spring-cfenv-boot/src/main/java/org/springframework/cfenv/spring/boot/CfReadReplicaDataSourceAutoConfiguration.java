@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Registers a {@link CfReadWriteRoutingDataSource} when
+ * {@code cfenv.jdbc.read-replicas.enabled} is {@code true} and the bound database
+ * publishes read replicas, so that read-only transactions are spread across the replicas.
+ *
+ * <p>The replica URLs are set by {@link CfDataSourceEnvironmentPostProcessor}. Each
+ * replica uses the username, password and driver of the primary database and the
+ * {@code spring.datasource.hikari} pool settings.
+ *
+ * <p>The primary pool ({@code cfenvPrimaryDataSource}) and each replica pool
+ * ({@code cfenvReplicaDataSource0}, {@code cfenvReplicaDataSource1}, ...) are beans of
+ * their own, so that they are closed with the application context and show up in pool
+ * metrics. The routing data source is the {@link Primary @Primary} {@link DataSource}.
+ *
+ * @author agent
+ */
+@Configuration
+@ConditionalOnClass({ AbstractRoutingDataSource.class, DataSourceProperties.class })
+@ConditionalOnProperty(prefix = "cfenv.jdbc.read-replicas", name = "enabled", havingValue = "true")
+@AutoConfigureBefore(DataSourceAutoConfiguration.class)
+@EnableConfigurationProperties(DataSourceProperties.class)
+@Import(CfReadReplicaDataSourceAutoConfiguration.ReadReplicaDataSourceConfiguration.class)
+public class CfReadReplicaDataSourceAutoConfiguration {
+
+	public static final String REPLICA_URLS = "cfenv.jdbc.read-replicas.urls";
+
+	static final String PRIMARY_DATA_SOURCE_BEAN_NAME = "cfenvPrimaryDataSource";
+
+	static final String REPLICA_DATA_SOURCE_BEAN_NAME_PREFIX = "cfenvReplicaDataSource";
+
+	private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+	private static DataSource bindPoolProperties(Environment environment, DataSource dataSource) {
+		Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(dataSource));
+		return dataSource;
+	}
+
+	private static List<String> getReplicaUrls(Environment environment) {
+		return Binder.get(environment).bind(REPLICA_URLS, Bindable.listOf(String.class))
+				.orElse(Collections.emptyList());
+	}
+
+	@Configuration
+	@ConditionalOnMissingBean(DataSource.class)
+	@ConditionalOnProperty(REPLICA_URLS + "[0]")
+	@Import(ReplicaDataSourcesRegistrar.class)
+	static class ReadReplicaDataSourceConfiguration {
+
+		@Bean(PRIMARY_DATA_SOURCE_BEAN_NAME)
+		public DataSource cfenvPrimaryDataSource(DataSourceProperties properties, Environment environment) {
+			return bindPoolProperties(environment, properties.initializeDataSourceBuilder().build());
+		}
+
+		@Bean
+		@Primary
+		public DataSource dataSource(@Qualifier(PRIMARY_DATA_SOURCE_BEAN_NAME) DataSource primary,
+				Environment environment, BeanFactory beanFactory) {
+			List<DataSource> replicas = new ArrayList<>();
+			for (int i = 0; i < getReplicaUrls(environment).size(); i++) {
+				replicas.add(beanFactory.getBean(REPLICA_DATA_SOURCE_BEAN_NAME_PREFIX + i, DataSource.class));
+			}
+			return new LazyConnectionDataSourceProxy(new CfReadWriteRoutingDataSource(primary, replicas));
+		}
+
+	}
+
+	/**
+	 * Registers one data source bean per replica URL, closed with the context like any
+	 * other pool.
+	 */
+	static class ReplicaDataSourcesRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware,
+			BeanFactoryAware {
+
+		private Environment environment;
+
+		private BeanFactory beanFactory;
+
+		@Override
+		public void setEnvironment(Environment environment) {
+			this.environment = environment;
+		}
+
+		@Override
+		public void setBeanFactory(BeanFactory beanFactory) {
+			this.beanFactory = beanFactory;
+		}
+
+		@Override
+		public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata,
+				BeanDefinitionRegistry registry) {
+			List<String> replicaUrls = getReplicaUrls(this.environment);
+			for (int i = 0; i < replicaUrls.size(); i++) {
+				String replicaUrl = replicaUrls.get(i);
+				AbstractBeanDefinition beanDefinition = BeanDefinitionBuilder
+						.genericBeanDefinition(DataSource.class, () -> createReplica(replicaUrl))
+						.getBeanDefinition();
+				beanDefinition.setDestroyMethodName(AbstractBeanDefinition.INFER_METHOD);
+				registry.registerBeanDefinition(REPLICA_DATA_SOURCE_BEAN_NAME_PREFIX + i, beanDefinition);
+			}
+		}
+
+		private DataSource createReplica(String replicaUrl) {
+			DataSourceProperties properties = this.beanFactory.getBean(DataSourceProperties.class);
+			DataSource replica = DataSourceBuilder.create(properties.getClassLoader())
+					.type(properties.getType())
+					.driverClassName(properties.determineDriverClassName())
+					.url(replicaUrl)
+					.username(properties.determineUsername())
+					.password(properties.determinePassword())
+					.build();
+			return bindPoolProperties(this.environment, replica);
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link AbstractRoutingDataSource} that sends read-only transactions to read replicas,
+ * in round-robin order, and everything else to the primary database.
+ *
+ * <p>Transaction managers obtain a connection before marking the transaction read-only,
+ * so this data source should be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} that defers
+ * fetching the connection until the first statement is executed.
+ *
+ * @author agent
+ */
+public class CfReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	private static final String PRIMARY = "primary";
+
+	private final List<String> replicaKeys = new ArrayList<>();
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	public CfReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+		Map<Object, Object> targetDataSources = new HashMap<>();
+		targetDataSources.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			String replicaKey = "replica-" + i;
+			this.replicaKeys.add(replicaKey);
+			targetDataSources.put(replicaKey, replicas.get(i));
+		}
+		setTargetDataSources(targetDataSources);
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (this.replicaKeys.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY;
+		}
+		int index = Math.floorMod(this.counter.getAndIncrement(), this.replicaKeys.size());
+		return this.replicaKeys.get(index);
+	}
+
+}
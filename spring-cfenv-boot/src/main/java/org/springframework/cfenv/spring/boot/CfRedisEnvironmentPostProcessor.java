@@ -0,0 +1,282 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLog;
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfEndpoint;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Sets {@code spring.redis} properties from the single bound Redis service, detected by
+ * a {@code redis} tag, a label starting with {@code redis}, {@code p-redis} or
+ * {@code p.redis}, or a {@code redis} or {@code rediss} URI.
+ *
+ * <p>Sentinel masters and nodes are read from a nested {@code sentinel} object with
+ * {@code master} and {@code nodes} fields or from the {@code sentinel_master} and
+ * {@code sentinels} keys; cluster nodes from a nested {@code cluster} object or the
+ * {@code cluster_nodes} key. A {@code tls_port} credential or a {@code rediss} URI
+ * enables SSL. With a {@code tls_port}, nodes listed without a port use that port, or the
+ * {@code tls_port} of the nested {@code sentinel} object or the {@code sentinel_tls_port}
+ * key for sentinels.
+ *
+ * <p>Lettuce pool sizes and the command timeout are set with the lowest precedence from
+ * {@code cfenv.redis.pool.max-active}, {@code max-idle}, {@code min-idle} and
+ * {@code max-wait} and {@code cfenv.redis.timeout}, so that concurrent callers share a
+ * warm pool of connections. The pool is only configured when Commons Pool 2 is on the
+ * class path, and can be turned off with {@code cfenv.redis.pool.enabled=false}. These
+ * settings are read when the {@code spring.redis} properties are, so they can also be
+ * set in application configuration files.
+ *
+ * @author agent
+ */
+public class CfRedisEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered,
+		ApplicationListener<ApplicationEvent> {
+
+	public static final String PROPERTY_PREFIX = "cfenv.redis.";
+
+	public static final String POOL_ENABLED = PROPERTY_PREFIX + "pool.enabled";
+
+	public static final String TIMEOUT = PROPERTY_PREFIX + "timeout";
+
+	private static final String[] REDIS_LABELS = { "redis", "p-redis", "p.redis" };
+
+	private static final String[] REDIS_SCHEMES = { "redis", "rediss" };
+
+	private static final int DEFAULT_PORT = 6379;
+
+	private static final int DEFAULT_SENTINEL_PORT = 26379;
+
+	private static final String PROPERTY_SOURCE_NAME = "cfenvredis";
+
+	private static final String DEFAULTS_PROPERTY_SOURCE_NAME = "cfenvredisdefaults";
+
+	private static final Map<String, String> POOL_DEFAULTS;
+
+	static {
+		Map<String, String> poolDefaults = new LinkedHashMap<>();
+		poolDefaults.put("max-active", "16");
+		poolDefaults.put("max-idle", "16");
+		poolDefaults.put("min-idle", "2");
+		poolDefaults.put("max-wait", "2000ms");
+		POOL_DEFAULTS = poolDefaults;
+	}
+
+	private static final String DEFAULT_TIMEOUT = "2000ms";
+
+	private static final boolean COMMONS_POOL_PRESENT = ClassUtils.isPresent(
+			"org.apache.commons.pool2.impl.GenericObjectPool", CfRedisEnvironmentPostProcessor.class.getClassLoader());
+
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfRedisEnvironmentPostProcessor.class);
+
+	private static final AtomicInteger invocationCount = new AtomicInteger();
+
+	// Before ConfigFileApplicationListener so values there can use these ones
+	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
+
+	@Override
+	public int getOrder() {
+		return this.order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME, DEFAULTS_PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
+		increaseInvocationCount();
+		if (CfEnvPlatform.isActive(environment)) {
+			List<CfService> redisServices = CfEnvSingleton.getCfEnvInstance().streamServices()
+					.filter(this::isRedisService).collect(Collectors.toList());
+			if (redisServices.size() != 1) {
+				if (invocationCount.get() == 1) {
+					DEFERRED_LOG.debug("Skipping execution of CfRedisEnvironmentPostProcessor. Found "
+							+ redisServices.size() + " Redis services, expected exactly one");
+				}
+				return;
+			}
+			CfService cfService = redisServices.get(0);
+			Map<String, Object> properties = getConnectionProperties(cfService.getCredentials());
+
+			MutablePropertySources propertySources = environment.getPropertySources();
+			if (propertySources.contains(
+					CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+				propertySources.addAfter(
+						CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME,
+						new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+			}
+			else {
+				propertySources
+						.addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+			}
+			// Lowest precedence so that values configured by the application win
+			propertySources.addLast(
+					new CfEnvDefaultsPropertySource(DEFAULTS_PROPERTY_SOURCE_NAME, environment, this::getDefaults));
+
+			CfEnvStartupReport.recordClaim(cfService.getName(), getClass().getName());
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.info("Setting spring.redis properties from bound service ["
+						+ cfService.getName() + "]");
+			}
+		}
+		else {
+			if (invocationCount.get() == 1) {
+				DEFERRED_LOG.debug("Not setting spring.redis properties, not in Cloud Foundry Environment");
+			}
+		}
+	}
+
+	private boolean isRedisService(CfService cfService) {
+		if (cfService.existsByTagIgnoreCase("redis") || cfService.existsByUriSchemeStartsWith(REDIS_SCHEMES)) {
+			return true;
+		}
+		for (String label : REDIS_LABELS) {
+			if (cfService.existsByLabelStartsWith(label)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> getConnectionProperties(CfCredentials cfCredentials) {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		String uri = cfCredentials.getUri(REDIS_SCHEMES);
+		String tlsPort = cfCredentials.getString("tls_port");
+		String host = cfCredentials.getHost();
+		if (host != null) {
+			properties.put("spring.redis.host", host);
+			String port = (tlsPort != null) ? tlsPort : cfCredentials.getPort();
+			if (port != null && !"-1".equals(port)) {
+				properties.put("spring.redis.port", port);
+			}
+		}
+		String password = cfCredentials.getPassword();
+		if (password != null) {
+			properties.put("spring.redis.password", password);
+		}
+		boolean ssl = tlsPort != null || (uri != null && uri.startsWith("rediss:"));
+		if (ssl) {
+			properties.put("spring.redis.ssl", true);
+		}
+		// Nodes listed without a port use the TLS port when SSL is enabled
+		int nodePort = (tlsPort != null) ? parsePort(tlsPort) : DEFAULT_PORT;
+
+		Object sentinel = cfCredentials.getMap().get("sentinel");
+		String master;
+		List<CfEndpoint> sentinelNodes;
+		if (sentinel instanceof Map) {
+			CfCredentials sentinelCredentials = new CfCredentials((Map<String, Object>) sentinel);
+			master = sentinelCredentials.getString("master", "master_name");
+			sentinelNodes = sentinelCredentials.getEndpoints(
+					getSentinelPort(sentinelCredentials.getString("tls_port"), tlsPort), "nodes");
+		}
+		else {
+			master = cfCredentials.getString("sentinel_master", "master_name");
+			sentinelNodes = cfCredentials.getEndpoints(
+					getSentinelPort(cfCredentials.getString("sentinel_tls_port"), tlsPort), "sentinels",
+					"sentinel_nodes");
+		}
+		if (master != null && !sentinelNodes.isEmpty()) {
+			properties.put("spring.redis.sentinel.master", master);
+			properties.put("spring.redis.sentinel.nodes", join(sentinelNodes));
+		}
+
+		Object cluster = cfCredentials.getMap().get("cluster");
+		List<CfEndpoint> clusterNodes = (cluster instanceof Map)
+				? new CfCredentials((Map<String, Object>) cluster).getEndpoints(nodePort, "nodes")
+				: cfCredentials.getEndpoints(nodePort, "cluster_nodes");
+		if (!clusterNodes.isEmpty()) {
+			properties.put("spring.redis.cluster.nodes", join(clusterNodes));
+		}
+		return properties;
+	}
+
+	private static int getSentinelPort(String sentinelTlsPort, String tlsPort) {
+		if (sentinelTlsPort != null) {
+			return parsePort(sentinelTlsPort);
+		}
+		return (tlsPort != null) ? parsePort(tlsPort) : DEFAULT_SENTINEL_PORT;
+	}
+
+	private static int parsePort(String port) {
+		try {
+			return Integer.parseInt(port.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid Redis TLS port [" + port + "]", e);
+		}
+	}
+
+	private Map<String, Object> getDefaults(PropertyResolver environment) {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("spring.redis.timeout", environment.getProperty(TIMEOUT, DEFAULT_TIMEOUT));
+		if (COMMONS_POOL_PRESENT && environment.getProperty(POOL_ENABLED, Boolean.class, true)) {
+			for (Map.Entry<String, String> poolDefault : POOL_DEFAULTS.entrySet()) {
+				properties.put("spring.redis.lettuce.pool." + poolDefault.getKey(),
+						environment.getProperty(PROPERTY_PREFIX + "pool." + poolDefault.getKey(), poolDefault.getValue()));
+			}
+		}
+		return properties;
+	}
+
+	private static String join(List<CfEndpoint> endpoints) {
+		return endpoints.stream().map(CfEndpoint::toString).collect(Collectors.joining(","));
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ApplicationPreparedEvent) {
+			this.DEFERRED_LOG.switchTo(CfRedisEnvironmentPostProcessor.class);
+			CfEnvDefaultsPropertySource.moveToLast(
+					((ApplicationPreparedEvent) event).getApplicationContext().getEnvironment(),
+					DEFAULTS_PROPERTY_SOURCE_NAME);
+		}
+	}
+
+	/**
+	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
+	 */
+	private void increaseInvocationCount() {
+		invocationCount.incrementAndGet();
+	}
+
+}
@@ -17,9 +17,9 @@ package org.springframework.cfenv.spring.boot;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.cloud.CloudPlatform;
 import org.springframework.boot.context.config.ConfigFileApplicationListener;
 import org.springframework.boot.context.event.ApplicationPreparedEvent;
 import org.springframework.boot.env.EnvironmentPostProcessor;
@@ -45,9 +45,9 @@ public class CfSingleSignOnEnvironmentPostProcessor implements EnvironmentPostPr
 
 	private static final String PROPERTY_SOURCE_NAME = "cfSingleSignOnEnvironmentPostProcessor";
 
-	private static DeferredLog DEFERRED_LOG = new DeferredLog();
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfSingleSignOnEnvironmentPostProcessor.class);
 
-	private static int invocationCount;
+	private static final AtomicInteger invocationCount = new AtomicInteger();
 
 	// Before ConfigFileApplicationListener so values there can use these ones
 	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
@@ -63,15 +63,20 @@ public class CfSingleSignOnEnvironmentPostProcessor implements EnvironmentPostPr
 
 	@Override
 	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
 		increaseInvocationCount();
-		if (CloudPlatform.CLOUD_FOUNDRY.isActive(environment)) {
+		if (CfEnvPlatform.isActive(environment)) {
 			CfEnv cfEnv = CfEnvSingleton.getCfEnvInstance();
 			CfService cfService;
 			try {
 				cfService = cfEnv.findServiceByLabel(PIVOTAL_SSO_LABEL);
 			}
 			catch (Exception e) {
-				if (invocationCount == 1) {
+				if (invocationCount.get() == 1) {
 					DEFERRED_LOG.debug("Skipping execution of CfSingleSignOnEnvironmentPostProcessor.  " + e.getMessage());
 				}
 				return;
@@ -105,14 +110,15 @@ public class CfSingleSignOnEnvironmentPostProcessor implements EnvironmentPostPr
 							.addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
 				}
 
-				if (invocationCount == 1) {
+				CfEnvStartupReport.recordClaim(cfService.getName(), getClass().getName());
+				if (invocationCount.get() == 1) {
 					DEFERRED_LOG.info("Setting security.oauth2.client properties from bound service ["
 							+ cfService.getName() + "]");
 				}
 			}
 		}
 		else {
-			if (invocationCount == 1) {
+			if (invocationCount.get() == 1) {
 				DEFERRED_LOG.debug("Not setting security.oauth2.client properties, not in Cloud Foundry Environment");
 			}
 		}
@@ -129,9 +135,7 @@ public class CfSingleSignOnEnvironmentPostProcessor implements EnvironmentPostPr
 	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
 	 */
 	private void increaseInvocationCount() {
-		synchronized (this) {
-			invocationCount++;
-		}
+		invocationCount.incrementAndGet();
 	}
 
 }
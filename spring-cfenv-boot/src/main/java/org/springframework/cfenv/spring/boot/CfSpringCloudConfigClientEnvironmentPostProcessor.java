@@ -17,9 +17,9 @@ package org.springframework.cfenv.spring.boot;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.cloud.CloudPlatform;
 import org.springframework.boot.context.config.ConfigFileApplicationListener;
 import org.springframework.boot.context.event.ApplicationPreparedEvent;
 import org.springframework.boot.env.EnvironmentPostProcessor;
@@ -52,9 +52,9 @@ public class CfSpringCloudConfigClientEnvironmentPostProcessor implements Enviro
 
 	private static final String CONFIG_SERVER_SERVICE_TAG_NAME = "configuration";
 
-	private static DeferredLog DEFERRED_LOG = new DeferredLog();
+	private static DeferredLog DEFERRED_LOG = new CfEnvDeferredLog(CfSpringCloudConfigClientEnvironmentPostProcessor.class);
 
-	private static int invocationCount;
+	private static final AtomicInteger invocationCount = new AtomicInteger();
 
 	// Before ConfigFileApplicationListener so values there can use these ones
 	private int order = ConfigFileApplicationListener.DEFAULT_ORDER - 1;
@@ -70,15 +70,20 @@ public class CfSpringCloudConfigClientEnvironmentPostProcessor implements Enviro
 
 	@Override
 	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		CfEnvPostProcessorRecorder.record(getClass(), environment, () -> processEnvironment(environment),
+				PROPERTY_SOURCE_NAME);
+	}
+
+	private void processEnvironment(ConfigurableEnvironment environment) {
 		increaseInvocationCount();
-		if (CloudPlatform.CLOUD_FOUNDRY.isActive(environment)) {
+		if (CfEnvPlatform.isActive(environment)) {
 			CfEnv cfEnv = CfEnvSingleton.getCfEnvInstance();
 			CfService cfService;
 			try {
 				cfService = cfEnv.findServiceByTag(CONFIG_SERVER_SERVICE_TAG_NAME);
 			}
 			catch (Exception e) {
-				if (invocationCount == 1) {
+				if (invocationCount.get() == 1) {
 					DEFERRED_LOG.debug("Skipping execution of CfDataSourceEnvironmentPostProcessor.  " + e.getMessage());
 				}
 				return;
@@ -109,14 +114,15 @@ public class CfSpringCloudConfigClientEnvironmentPostProcessor implements Enviro
 							.addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
 				}
 
-				if (invocationCount == 1) {
+				CfEnvStartupReport.recordClaim(cfService.getName(), getClass().getName());
+				if (invocationCount.get() == 1) {
 					DEFERRED_LOG.info("Setting spring.cloud.config.client properties from bound service ["
 							+ cfService.getName() + "]");
 				}
 			}
 		}
 		else {
-			if (invocationCount == 1) {
+			if (invocationCount.get() == 1) {
 				DEFERRED_LOG.debug("Not setting spring.cloud.config.client properties, not in Cloud Foundry Environment");
 			}
 		}
@@ -134,9 +140,7 @@ public class CfSpringCloudConfigClientEnvironmentPostProcessor implements Enviro
 	 * EnvironmentPostProcessors can end up getting called twice due to spring-cloud-commons functionality
 	 */
 	private void increaseInvocationCount() {
-		synchronized (this) {
-			invocationCount++;
-		}
+		invocationCount.incrementAndGet();
 	}
 
 }
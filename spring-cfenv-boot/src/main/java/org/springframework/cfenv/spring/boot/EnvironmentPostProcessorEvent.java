@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event emitted for each run of a Spring CF Env
+ * {@link org.springframework.boot.env.EnvironmentPostProcessor}.
+ *
+ * @author agent
+ */
+@Name("org.springframework.cfenv.EnvironmentPostProcessor")
+@Label("CfEnv Environment Post Processor")
+@Category("Spring CF Env")
+@Description("Execution of an EnvironmentPostProcessor that sets properties from bound services")
+@StackTrace(false)
+public class EnvironmentPostProcessorEvent extends Event {
+
+	@Label("Processor")
+	public String processor;
+
+	@Label("Property Count")
+	@Description("Number of properties contributed to the environment")
+	public int propertyCount;
+
+	@Label("Succeeded")
+	@Description("Whether the operation completed without an exception")
+	public boolean succeeded;
+
+}
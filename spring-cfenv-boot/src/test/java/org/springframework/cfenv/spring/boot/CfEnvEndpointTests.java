@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.jdbc.MySqlJdbcUrlCreator;
+import org.springframework.cfenv.spring.boot.CfEnvEndpoint.CfEnvDescriptor;
+import org.springframework.cfenv.spring.boot.CfEnvEndpoint.ProcessorDescriptor;
+import org.springframework.cfenv.spring.boot.CfEnvEndpoint.ServiceDescriptor;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.ResourceUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class CfEnvEndpointTests {
+
+	@Before
+	public void clearReport() {
+		CfEnvStartupReport.clear();
+	}
+
+	@Test
+	public void testEndpointDescribesDataSourceBinding() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services.json");
+		new CfDataSourceEnvironmentPostProcessor().postProcessEnvironment(new StandardEnvironment(), null);
+
+		CfEnvDescriptor descriptor = new CfEnvEndpoint(new CfEnv()).cfenv();
+
+		assertThat(descriptor.getServices()).hasSize(2);
+		ServiceDescriptor mysql = descriptor.getServices().stream()
+				.filter((service) -> service.getName().equals("mysql")).findFirst().get();
+		assertThat(mysql.getLabel()).isEqualTo("p-mysql");
+		assertThat(mysql.getCredentials()).containsEntry("password", "******");
+		assertThat(mysql.getCredentials().values()).doesNotContain("mysql_password");
+		assertThat(mysql.getClaimedBy()).containsExactly(CfDataSourceEnvironmentPostProcessor.class.getName()
+				+ " using " + MySqlJdbcUrlCreator.class.getName());
+
+		ProcessorDescriptor processor = descriptor.getProcessors().get(0);
+		assertThat(processor.getName()).isEqualTo(CfDataSourceEnvironmentPostProcessor.class.getName());
+		assertThat(processor.getDurationMillis()).isGreaterThanOrEqualTo(0);
+		assertThat(processor.getPropertySources().get("cfenvjdbc")).contains("spring.datasource.url",
+				"spring.datasource.password");
+	}
+
+	private void mockVcapServices(String fileName) throws Exception {
+		File file = ResourceUtils.getFile("classpath:" + fileName);
+		String fileContents = new String(Files.readAllBytes(file.toPath()));
+		Map<String, String> env = System.getenv();
+		new MockUp<System>() {
+			@Mock
+			public String getenv(String name) {
+				if (name.equalsIgnoreCase("VCAP_SERVICES")) {
+					return fileContents;
+				}
+				return env.get(name);
+			}
+		};
+	}
+
+}
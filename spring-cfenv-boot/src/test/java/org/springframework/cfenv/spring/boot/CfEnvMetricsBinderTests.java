@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import org.springframework.cfenv.core.CfEnvMetrics;
+import org.springframework.cfenv.core.CfEnvMetrics.Lookup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class CfEnvMetricsBinderTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void bindsParseAndLookupMetrics() {
+		new CfEnvMetricsBinder().bindTo(this.registry);
+		FunctionTimer ambiguousTagLookups = this.registry.get("cfenv.lookup")
+				.tag("method", "findServiceByTag").tag("outcome", "ambiguous").functionTimer();
+		double parseCount = this.registry.get("cfenv.parse").functionTimer().count();
+		double lookupCount = ambiguousTagLookups.count();
+		double lookupTime = ambiguousTagLookups.totalTime(TimeUnit.NANOSECONDS);
+
+		CfEnvMetrics.recordParse(4096, 3, 2_000_000);
+		CfEnvMetrics.recordLookup(Lookup.TAG, 2, 500);
+
+		assertThat(this.registry.get("cfenv.vcap.services.size").gauge().value()).isEqualTo(4096);
+		assertThat(this.registry.get("cfenv.services").gauge().value()).isEqualTo(3);
+		assertThat(this.registry.get("cfenv.parse").functionTimer().count()).isEqualTo(parseCount + 1);
+		assertThat(ambiguousTagLookups.count()).isEqualTo(lookupCount + 1);
+		assertThat(ambiguousTagLookups.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(lookupTime + 500);
+		assertThat(this.registry.get("cfenv.lookup").functionTimers()).hasSize(9);
+		assertThat(this.registry.get("cfenv.jdbc.resolution").functionTimer()).isNotNull();
+	}
+
+}
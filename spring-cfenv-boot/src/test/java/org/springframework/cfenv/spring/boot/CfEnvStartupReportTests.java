@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.cfenv.core.CfEnv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class CfEnvStartupReportTests {
+
+	@Before
+	public void clearReport() {
+		CfEnvStartupReport.clear();
+	}
+
+	@Test
+	public void runsAndMessagesAreCapped() {
+		for (int i = 0; i < CfEnvStartupReport.MAX_RUNS + 10; i++) {
+			CfEnvStartupReport.recordRun("processor", i, Collections.emptyMap());
+			CfEnvStartupReport.recordMessage("processor", "message " + i);
+		}
+
+		CfEnvStartupReport report = CfEnvStartupReport.snapshot();
+		assertThat(report.getRuns()).hasSize(CfEnvStartupReport.MAX_RUNS);
+		assertThat(report.getRuns().get(0).getDurationNanos()).isEqualTo(10);
+		assertThat(report.getMessages("processor")).hasSize(CfEnvStartupReport.MAX_MESSAGES);
+		assertThat(report.getMessages("processor")).last().isEqualTo("message " + (CfEnvStartupReport.MAX_RUNS + 9));
+	}
+
+	@Test
+	public void reportIsClearedWhenApplicationIsReady() {
+		CfEnvStartupReport.recordRun("processor", 1, Collections.emptyMap());
+		CfEnvStartupReport.recordClaim("mysql", "processor");
+		CfEnvEndpoint endpoint = new CfEnvEndpoint(new CfEnv());
+		CfEnvStartupReportListener listener = new CfEnvStartupReportListener();
+
+		listener.onApplicationEvent(new ApplicationStartingEvent(new SpringApplication(), new String[0]));
+		assertThat(CfEnvStartupReport.snapshot().getRuns()).hasSize(1);
+
+		listener.onApplicationEvent(new ApplicationReadyEvent(new SpringApplication(), new String[0], null));
+		CfEnvStartupReport report = CfEnvStartupReport.snapshot();
+		assertThat(report.getRuns()).isEmpty();
+		assertThat(report.getClaims("mysql")).isEmpty();
+		assertThat(endpoint.cfenv().getProcessors()).hasSize(1);
+	}
+
+}
@@ -16,15 +16,26 @@
 package org.springframework.cfenv.spring.boot;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.Map;
 
 import mockit.Mock;
 import mockit.MockUp;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.cfenv.core.ServiceBindingVcapSource;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
 import org.springframework.util.ResourceUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -40,6 +51,9 @@ public class DataSourceTests {
 
 	private final ConfigurableApplicationContext context = new AnnotationConfigApplicationContext();
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test
 	public void testDataSource() throws Exception {
 
@@ -47,7 +61,113 @@ public class DataSourceTests {
 		System.setProperty("VCAP_APPLICATION", "yes");
 
 		// To setup values used by CfEnv
-		File file = ResourceUtils.getFile("classpath:vcap-services.json");
+		mockVcapServices("vcap-services.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.url")).isEqualTo(mysqlJdbcUrl);
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.username")).isEqualTo("mysql_username");
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.password")).isEqualTo("mysql_password");
+		assertThat(this.context.getEnvironment().containsProperty("spring.datasource.hikari.maximum-pool-size"))
+				.isFalse();
+
+	}
+
+	@Test
+	public void testPoolSizeFromPlanLimit() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services.json");
+		TestPropertyValues.of("cfenv.jdbc.pool.plan-limits.100mb=40", "cfenv.jdbc.pool.instance-count=3")
+				.applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.hikari.maximum-pool-size"))
+				.isEqualTo("13");
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.hikari.minimum-idle"))
+				.isEqualTo("13");
+	}
+
+	@Test
+	public void testPoolSizeFromCredentials() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-max-connections.json");
+		TestPropertyValues.of("cfenv.jdbc.pool.plan-limits.100mb=40", "cfenv.jdbc.pool.instance-count=4",
+				"cfenv.jdbc.pool.minimum-idle=2", "spring.datasource.hikari.minimum-idle=1").applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.hikari.maximum-pool-size"))
+				.isEqualTo("25");
+		// Values set by the application take precedence
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.hikari.minimum-idle"))
+				.isEqualTo("1");
+	}
+
+	@Test
+	public void testSettingsFromApplicationProperties() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		// Configuration files are loaded after the post-processor and added last
+		Map<String, Object> applicationProperties = new HashMap<>();
+		applicationProperties.put("cfenv.jdbc.service.mysql.profile", "reporting");
+		applicationProperties.put("cfenv.jdbc.pool.plan-limits.100mb", "40");
+		applicationProperties.put("cfenv.jdbc.pool.instance-count", "4");
+		applicationProperties.put("spring.datasource.hikari.minimum-idle", "1");
+		this.context.getEnvironment().getPropertySources()
+				.addLast(new MapPropertySource("applicationConfig: [classpath:/application.properties]",
+						applicationProperties));
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.datasource.url")).startsWith(mysqlJdbcUrl)
+				.contains("useCompression=true");
+		assertThat(environment.getProperty("spring.datasource.hikari.maximum-pool-size")).isEqualTo("10");
+
+		environmentPostProcessor.onApplicationEvent(
+				new ApplicationPreparedEvent(new SpringApplication(), new String[0], this.context));
+		assertThat(environment.getProperty("spring.datasource.hikari.minimum-idle")).isEqualTo("1");
+	}
+
+	@Test
+	public void testDataSourceFromServiceBindingRoot() throws Exception {
+		System.clearProperty("VCAP_APPLICATION");
+		File db = this.temporaryFolder.newFolder("orders-db");
+		write(db, "type", "mysql\n");
+		write(db, "host", "10.0.0.1");
+		write(db, "port", "3306");
+		write(db, "username", "orders_user");
+		write(db, "password", "orders_password");
+		write(db, "database", "orders");
+		mockServiceBindingRoot(this.temporaryFolder.getRoot().getAbsolutePath());
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.url"))
+				.isEqualTo("jdbc:mysql://10.0.0.1:3306/orders?user=orders_user&password=orders_password");
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.username")).isEqualTo("orders_user");
+		assertThat(this.context.getEnvironment().getProperty("spring.datasource.password"))
+				.isEqualTo("orders_password");
+	}
+
+	private void write(File directory, String name, String value) throws IOException {
+		Files.write(new File(directory, name).toPath(), value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void mockServiceBindingRoot(String root) {
+		Map<String, String> env = System.getenv();
+		new MockUp<System>() {
+			@Mock
+			public String getenv(String name) {
+				if (name.equalsIgnoreCase("VCAP_SERVICES")) {
+					return null;
+				}
+				if (name.equals(ServiceBindingVcapSource.SERVICE_BINDING_ROOT)) {
+					return root;
+				}
+				return env.get(name);
+			}
+		};
+	}
+
+	private void mockVcapServices(String fileName) throws Exception {
+		File file = ResourceUtils.getFile("classpath:" + fileName);
 		String fileContents = new String(Files.readAllBytes(file.toPath()));
 		Map<String, String> env = System.getenv();
 		new MockUp<System>() {
@@ -59,12 +179,6 @@ public class DataSourceTests {
 				return env.get(name);
 			}
 		};
-
-		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
-		assertThat(this.context.getEnvironment().getProperty("spring.datasource.url")).isEqualTo(mysqlJdbcUrl);
-		assertThat(this.context.getEnvironment().getProperty("spring.datasource.username")).isEqualTo("mysql_username");
-		assertThat(this.context.getEnvironment().getProperty("spring.datasource.password")).isEqualTo("mysql_password");
-
 	}
 
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cfenv.core.CfEnvFlightRecorder;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author agent
+ */
+public class EnvironmentPostProcessorEventTests {
+
+	private static final String EVENT_NAME = "org.springframework.cfenv.EnvironmentPostProcessor";
+
+	@Before
+	public void assumeFlightRecorder() {
+		assumeTrue(CfEnvFlightRecorder.isAvailable() && FlightRecorder.isAvailable());
+	}
+
+	@Test
+	public void eventCommittedForSuccessAndFailure() throws Exception {
+		ConfigurableEnvironment environment = new StandardEnvironment();
+		Path file = Files.createTempFile("cfenv", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable(EVENT_NAME).withoutThreshold();
+				recording.start();
+				CfEnvPostProcessorRecorder.record(CfRedisEnvironmentPostProcessor.class, environment,
+						() -> environment.getPropertySources().addFirst(new MapPropertySource("test",
+								Collections.singletonMap("spring.redis.host", "10.0.4.30"))), "test");
+				assertThatThrownBy(() -> CfEnvPostProcessorRecorder.record(CfKafkaEnvironmentPostProcessor.class,
+						environment, () -> {
+							throw new IllegalArgumentException("broken");
+						})).isInstanceOf(IllegalArgumentException.class);
+				recording.stop();
+				recording.dump(file);
+			}
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+					.filter((event) -> event.getEventType().getName().equals(EVENT_NAME)).collect(Collectors.toList());
+			assertThat(events).hasSize(2);
+			assertThat(events.get(0).getString("processor")).isEqualTo(CfRedisEnvironmentPostProcessor.class.getName());
+			assertThat(events.get(0).getInt("propertyCount")).isEqualTo(1);
+			assertThat(events.get(0).getBoolean("succeeded")).isTrue();
+			assertThat(events.get(1).getString("processor")).isEqualTo(CfKafkaEnvironmentPostProcessor.class.getName());
+			assertThat(events.get(1).getBoolean("succeeded")).isFalse();
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import mockit.Mock;
+import mockit.MockUp;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.ResourceUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks the properties set by {@link CfKafkaEnvironmentPostProcessor} against the
+ * Kafka client configuration built from them, without a broker.
+ *
+ * @author agent
+ */
+public class KafkaTests {
+
+	private final CfKafkaEnvironmentPostProcessor environmentPostProcessor = new CfKafkaEnvironmentPostProcessor();
+
+	private final ConfigurableApplicationContext context = new AnnotationConfigApplicationContext();
+
+	@Before
+	public void resetCfEnv() {
+		CfEnvSingleton.reset();
+	}
+
+	@Test
+	public void testKafkaWithSasl() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-kafka.json");
+		TestPropertyValues.of("cfenv.kafka.producer.profile=throughput", "spring.kafka.producer.compression-type=gzip")
+				.applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Map<String, Object> producerProperties = getKafkaProperties().buildProducerProperties();
+		ProducerConfig producerConfig = new ProducerConfig(producerProperties);
+		assertThat(producerConfig.getList(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG))
+				.containsExactly("10.0.4.60:9093", "10.0.4.61:9093", "10.0.4.62:9092");
+		assertThat(producerConfig.getString(SaslConfigs.SASL_MECHANISM)).isEqualTo("SCRAM-SHA-512");
+		assertThat(producerConfig.getLong(ProducerConfig.LINGER_MS_CONFIG)).isEqualTo(20L);
+		assertThat(producerConfig.getInt(ProducerConfig.BATCH_SIZE_CONFIG)).isEqualTo(131072);
+		// Values set by the application take precedence
+		assertThat(producerConfig.getString(ProducerConfig.COMPRESSION_TYPE_CONFIG)).isEqualTo("gzip");
+
+		assertThat(producerProperties.get(SaslConfigs.SASL_JAAS_CONFIG))
+				.isEqualTo("org.apache.kafka.common.security.scram.ScramLoginModule required "
+						+ "username=\"kafka_user\" password=\"kafka\\\"password\";");
+	}
+
+	@Test
+	public void testKafkaConsumerProfile() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-kafka-plaintext.json");
+		TestPropertyValues.of("cfenv.kafka.consumer.profile=latency", "cfenv.kafka.consumer.max-poll-records=50")
+				.applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		ConsumerConfig consumerConfig = new ConsumerConfig(getKafkaProperties().buildConsumerProperties());
+		assertThat(consumerConfig.getList(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG))
+				.containsExactly("10.0.4.70:9092", "10.0.4.71:9092");
+		assertThat(consumerConfig.getString(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG)).isEqualTo("PLAINTEXT");
+		assertThat(consumerConfig.getInt(ConsumerConfig.FETCH_MIN_BYTES_CONFIG)).isEqualTo(1);
+		assertThat(consumerConfig.getInt(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG)).isEqualTo(50);
+		assertThat(consumerConfig.getInt(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG)).isEqualTo(1048576);
+		assertThat(consumerConfig.getInt(ConsumerConfig.MAX_POLL_RECORDS_CONFIG)).isEqualTo(50);
+		assertThat(this.context.getEnvironment().containsProperty("spring.kafka.producer.batch-size")).isFalse();
+	}
+
+	@Test
+	public void testProfileFromApplicationProperties() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-kafka-plaintext.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		// Configuration files are loaded after the post-processor and added last
+		Map<String, Object> applicationProperties = new HashMap<>();
+		applicationProperties.put("cfenv.kafka.producer.profile", "latency");
+		applicationProperties.put("spring.kafka.producer.compression-type", "gzip");
+		this.context.getEnvironment().getPropertySources()
+				.addLast(new MapPropertySource("applicationConfig: [classpath:/application.properties]",
+						applicationProperties));
+		environmentPostProcessor.onApplicationEvent(
+				new ApplicationPreparedEvent(new SpringApplication(), new String[0], this.context));
+
+		ProducerConfig producerConfig = new ProducerConfig(getKafkaProperties().buildProducerProperties());
+		assertThat(producerConfig.getLong(ProducerConfig.LINGER_MS_CONFIG)).isEqualTo(0L);
+		assertThat(producerConfig.getInt(ProducerConfig.BATCH_SIZE_CONFIG)).isEqualTo(16384);
+		assertThat(producerConfig.getString(ProducerConfig.COMPRESSION_TYPE_CONFIG)).isEqualTo("gzip");
+	}
+
+	@Test
+	public void testUnknownProfile() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-kafka-plaintext.json");
+		TestPropertyValues.of("cfenv.kafka.producer.profile=fast").applyTo(this.context);
+
+		assertThatThrownBy(() -> environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Unknown cfenv.kafka.producer.profile [fast]");
+	}
+
+	private KafkaProperties getKafkaProperties() {
+		return Binder.get(this.context.getEnvironment()).bind("spring.kafka", KafkaProperties.class).get();
+	}
+
+	private void mockVcapServices(String fileName) throws Exception {
+		File file = ResourceUtils.getFile("classpath:" + fileName);
+		String fileContents = new String(Files.readAllBytes(file.toPath()));
+		Map<String, String> env = System.getenv();
+		new MockUp<System>() {
+			@Mock
+			public String getenv(String name) {
+				if (name.equalsIgnoreCase("VCAP_SERVICES")) {
+					return fileContents;
+				}
+				return env.get(name);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.ResourceUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class RabbitTests {
+
+	private final CfRabbitEnvironmentPostProcessor environmentPostProcessor = new CfRabbitEnvironmentPostProcessor();
+
+	private final ConfigurableApplicationContext context = new AnnotationConfigApplicationContext();
+
+	@Before
+	public void resetCfEnv() {
+		CfEnvSingleton.reset();
+	}
+
+	@Test
+	public void testRabbit() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-rabbitmq.json");
+		TestPropertyValues.of("cfenv.rabbitmq.prefetch=10", "cfenv.rabbitmq.publisher-confirms=true",
+				"spring.rabbitmq.cache.channel.size=100").applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.rabbitmq.addresses")).isEqualTo("10.0.4.50:5672,10.0.4.51:5672");
+		assertThat(environment.getProperty("spring.rabbitmq.username")).isEqualTo("rabbit_username");
+		assertThat(environment.getProperty("spring.rabbitmq.password")).isEqualTo("rabbit_password");
+		assertThat(environment.getProperty("spring.rabbitmq.virtual-host")).isEqualTo("rabbit_vhost/prod");
+		assertThat(environment.containsProperty("spring.rabbitmq.ssl.enabled")).isFalse();
+		assertThat(environment.getProperty("spring.rabbitmq.listener.simple.prefetch")).isEqualTo("10");
+		assertThat(environment.getProperty("spring.rabbitmq.publisher-confirms")).isEqualTo("true");
+		// Values set by the application take precedence
+		assertThat(environment.getProperty("spring.rabbitmq.cache.channel.size")).isEqualTo("100");
+	}
+
+	@Test
+	public void testRabbitSettingsFromApplicationProperties() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-rabbitmq.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		// Configuration files are loaded after the post-processor and added last
+		Map<String, Object> applicationProperties = new HashMap<>();
+		applicationProperties.put("cfenv.rabbitmq.prefetch", "10");
+		applicationProperties.put("cfenv.rabbitmq.publisher-confirms", "true");
+		applicationProperties.put("spring.rabbitmq.cache.channel.size", "100");
+		this.context.getEnvironment().getPropertySources()
+				.addLast(new MapPropertySource("applicationConfig: [classpath:/application.properties]",
+						applicationProperties));
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.rabbitmq.listener.simple.prefetch")).isEqualTo("10");
+		assertThat(environment.getProperty("spring.rabbitmq.publisher-confirms")).isEqualTo("true");
+
+		environmentPostProcessor.onApplicationEvent(
+				new ApplicationPreparedEvent(new SpringApplication(), new String[0], this.context));
+		assertThat(environment.getProperty("spring.rabbitmq.cache.channel.size")).isEqualTo("100");
+	}
+
+	@Test
+	public void testRabbitFromAmqpsUri() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-rabbitmq-amqps.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.rabbitmq.addresses")).isEqualTo("rabbit.example.com:5671");
+		assertThat(environment.getProperty("spring.rabbitmq.username")).isEqualTo("amqp_user");
+		assertThat(environment.getProperty("spring.rabbitmq.password")).isEqualTo("amqp+pass");
+		assertThat(environment.getProperty("spring.rabbitmq.virtual-host")).isEqualTo("amqp_vhost");
+		assertThat(environment.getProperty("spring.rabbitmq.ssl.enabled")).isEqualTo("true");
+		assertThat(environment.getProperty("spring.rabbitmq.cache.channel.size")).isEqualTo("50");
+		assertThat(environment.getProperty("spring.rabbitmq.listener.direct.prefetch")).isEqualTo("250");
+		assertThat(environment.containsProperty("spring.rabbitmq.publisher-confirms")).isFalse();
+	}
+
+	private void mockVcapServices(String fileName) throws Exception {
+		File file = ResourceUtils.getFile("classpath:" + fileName);
+		String fileContents = new String(Files.readAllBytes(file.toPath()));
+		Map<String, String> env = System.getenv();
+		new MockUp<System>() {
+			@Mock
+			public String getenv(String name) {
+				if (name.equalsIgnoreCase("VCAP_SERVICES")) {
+					return fileContents;
+				}
+				return env.get(name);
+			}
+		};
+	}
+
+}
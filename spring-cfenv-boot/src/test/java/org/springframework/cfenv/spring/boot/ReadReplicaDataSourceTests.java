@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.Test;
+
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class ReadReplicaDataSourceTests {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(CfReadReplicaDataSourceAutoConfiguration.class))
+			.withPropertyValues("spring.datasource.url=jdbc:h2:mem:primary", "spring.datasource.username=sa",
+					"cfenv.jdbc.read-replicas.urls[0]=jdbc:h2:mem:replica-a",
+					"cfenv.jdbc.read-replicas.urls[1]=jdbc:h2:mem:replica-b");
+
+	@Test
+	public void readOnlyTransactionsUseReplicasRoundRobin() {
+		this.contextRunner.withPropertyValues("cfenv.jdbc.read-replicas.enabled=true").run((context) -> {
+			DataSource dataSource = context.getBean(DataSource.class);
+			assertThat(dataSource).isInstanceOf(LazyConnectionDataSourceProxy.class);
+
+			TransactionTemplate transactionTemplate = new TransactionTemplate(
+					new DataSourceTransactionManager(dataSource));
+			List<String> urls = new ArrayList<>();
+			transactionTemplate.setReadOnly(true);
+			for (int i = 0; i < 3; i++) {
+				urls.add(transactionTemplate.execute((status) -> connectionUrl(dataSource)));
+			}
+			assertThat(urls).containsExactly("jdbc:h2:mem:replica-a", "jdbc:h2:mem:replica-b",
+					"jdbc:h2:mem:replica-a");
+
+			transactionTemplate.setReadOnly(false);
+			String url = transactionTemplate.execute((status) -> connectionUrl(dataSource));
+			assertThat(url).isEqualTo("jdbc:h2:mem:primary");
+			assertThat(connectionUrl(dataSource)).isEqualTo("jdbc:h2:mem:primary");
+		});
+	}
+
+	@Test
+	public void poolsAreBeansClosedWithTheContext() {
+		List<HikariDataSource> pools = new ArrayList<>();
+		this.contextRunner.withPropertyValues("cfenv.jdbc.read-replicas.enabled=true").run((context) -> {
+			assertThat(context.getBeansOfType(DataSource.class)).containsOnlyKeys("dataSource",
+					"cfenvPrimaryDataSource", "cfenvReplicaDataSource0", "cfenvReplicaDataSource1");
+			pools.addAll(context.getBeansOfType(HikariDataSource.class).values());
+			assertThat(pools).hasSize(3);
+			assertThat(pools).noneMatch(HikariDataSource::isClosed);
+		});
+		assertThat(pools).allMatch(HikariDataSource::isClosed);
+	}
+
+	@Test
+	public void routingDataSourceRequiresOptIn() {
+		this.contextRunner.run((context) -> assertThat(context).doesNotHaveBean(DataSource.class));
+	}
+
+	private String connectionUrl(DataSource dataSource) {
+		try (Connection connection = dataSource.getConnection()) {
+			return connection.getMetaData().getURL();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.spring.boot;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.ResourceUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class RedisTests {
+
+	private final CfRedisEnvironmentPostProcessor environmentPostProcessor = new CfRedisEnvironmentPostProcessor();
+
+	private final ConfigurableApplicationContext context = new AnnotationConfigApplicationContext();
+
+	@Before
+	public void resetCfEnv() {
+		CfEnvSingleton.reset();
+	}
+
+	@Test
+	public void testRedis() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services.json");
+		TestPropertyValues.of("cfenv.redis.pool.max-active=32", "spring.redis.lettuce.pool.min-idle=4")
+				.applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.redis.host")).isEqualTo("10.0.4.30");
+		assertThat(environment.getProperty("spring.redis.port")).isEqualTo("45470");
+		assertThat(environment.getProperty("spring.redis.password")).isEqualTo("redis_password");
+		assertThat(environment.containsProperty("spring.redis.ssl")).isFalse();
+		assertThat(environment.containsProperty("spring.redis.sentinel.master")).isFalse();
+		assertThat(environment.getProperty("spring.redis.timeout")).isEqualTo("2000ms");
+		assertThat(environment.getProperty("spring.redis.lettuce.pool.max-active")).isEqualTo("32");
+		assertThat(environment.getProperty("spring.redis.lettuce.pool.max-idle")).isEqualTo("16");
+		// Values set by the application take precedence
+		assertThat(environment.getProperty("spring.redis.lettuce.pool.min-idle")).isEqualTo("4");
+	}
+
+	@Test
+	public void testRedisSettingsFromApplicationProperties() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		// Configuration files are loaded after the post-processor and added last
+		Map<String, Object> applicationProperties = new HashMap<>();
+		applicationProperties.put("cfenv.redis.timeout", "5s");
+		applicationProperties.put("cfenv.redis.pool.max-active", "8");
+		applicationProperties.put("spring.redis.lettuce.pool.min-idle", "1");
+		this.context.getEnvironment().getPropertySources()
+				.addLast(new MapPropertySource("applicationConfig: [classpath:/application.properties]",
+						applicationProperties));
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.redis.timeout")).isEqualTo("5s");
+		assertThat(environment.getProperty("spring.redis.lettuce.pool.max-active")).isEqualTo("8");
+
+		environmentPostProcessor.onApplicationEvent(
+				new ApplicationPreparedEvent(new SpringApplication(), new String[0], this.context));
+		assertThat(environment.getProperty("spring.redis.lettuce.pool.min-idle")).isEqualTo("1");
+	}
+
+	@Test
+	public void testRedisSentinel() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-redis-sentinel.json");
+		TestPropertyValues.of("cfenv.redis.pool.enabled=false").applyTo(this.context);
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.containsProperty("spring.redis.host")).isFalse();
+		assertThat(environment.getProperty("spring.redis.password")).isEqualTo("redis_password");
+		assertThat(environment.getProperty("spring.redis.sentinel.master")).isEqualTo("mymaster");
+		assertThat(environment.getProperty("spring.redis.sentinel.nodes"))
+				.isEqualTo("10.0.4.31:26379,10.0.4.32:26380");
+		assertThat(environment.containsProperty("spring.redis.lettuce.pool.max-active")).isFalse();
+	}
+
+	@Test
+	public void testRedisSentinelWithTls() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-redis-sentinel-tls.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.redis.ssl")).isEqualTo("true");
+		assertThat(environment.getProperty("spring.redis.sentinel.nodes"))
+				.isEqualTo("10.0.4.31:26380,10.0.4.32:26381");
+	}
+
+	@Test
+	public void testRedisClusterWithTls() throws Exception {
+		System.setProperty("VCAP_APPLICATION", "yes");
+		mockVcapServices("vcap-services-redis-cluster.json");
+
+		environmentPostProcessor.postProcessEnvironment(this.context.getEnvironment(), null);
+		Environment environment = this.context.getEnvironment();
+		assertThat(environment.getProperty("spring.redis.host")).isEqualTo("10.0.4.40");
+		assertThat(environment.getProperty("spring.redis.port")).isEqualTo("6380");
+		assertThat(environment.getProperty("spring.redis.ssl")).isEqualTo("true");
+		assertThat(environment.getProperty("spring.redis.cluster.nodes"))
+				.isEqualTo("10.0.4.40:6380,10.0.4.41:6380,10.0.4.42:6380");
+	}
+
+	private void mockVcapServices(String fileName) throws Exception {
+		File file = ResourceUtils.getFile("classpath:" + fileName);
+		String fileContents = new String(Files.readAllBytes(file.toPath()));
+		Map<String, String> env = System.getenv();
+		new MockUp<System>() {
+			@Mock
+			public String getenv(String name) {
+				if (name.equalsIgnoreCase("VCAP_SERVICES")) {
+					return fileContents;
+				}
+				return env.get(name);
+			}
+		};
+	}
+
+}
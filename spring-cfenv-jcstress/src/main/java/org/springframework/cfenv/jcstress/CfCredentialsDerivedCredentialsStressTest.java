@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jcstress;
+
+import java.util.Collections;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import org.springframework.cfenv.core.CfCredentials;
+
+/**
+ * Checks that derived credentials added from several threads, as done when JDBC URLs
+ * are created concurrently, are not lost.
+ *
+ * @author agent
+ */
+@JCStressTest
+@Outcome(id = "2", expect = Expect.ACCEPTABLE, desc = "Both derived credentials are present")
+@Outcome(expect = Expect.FORBIDDEN, desc = "A derived credential was lost")
+@State
+public class CfCredentialsDerivedCredentialsStressTest {
+
+	private final CfCredentials cfCredentials = new CfCredentials(Collections.emptyMap());
+
+	@Actor
+	public void actor1() {
+		this.cfCredentials.getDerivedCredentials().put("jdbcUrl", "jdbc:mysql://db.example.com/app");
+	}
+
+	@Actor
+	public void actor2() {
+		this.cfCredentials.getDerivedCredentials().put("driverClassName", "org.mariadb.jdbc.Driver");
+	}
+
+	@Arbiter
+	public void arbiter(I_Result result) {
+		result.r1 = this.cfCredentials.getDerivedCredentials().size();
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jcstress;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.Z_Result;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.spring.boot.CfEnvSingleton;
+
+/**
+ * Checks that {@link CfEnvSingleton} hands out a single, fully constructed
+ * {@link CfEnv} to concurrent callers.
+ *
+ * @author agent
+ */
+@JCStressTest
+@Outcome(id = "true", expect = Expect.ACCEPTABLE, desc = "Both actors see the same CfEnv")
+@Outcome(id = "false", expect = Expect.FORBIDDEN, desc = "An actor saw no CfEnv or a second instance")
+@State
+public class CfEnvSingletonStressTest {
+
+	private CfEnv first;
+
+	private CfEnv second;
+
+	@Actor
+	public void actor1() {
+		this.first = CfEnvSingleton.getCfEnvInstance();
+	}
+
+	@Actor
+	public void actor2() {
+		this.second = CfEnvSingleton.getCfEnvInstance();
+	}
+
+	@Arbiter
+	public void arbiter(Z_Result result) {
+		result.r1 = this.first != null && this.first == this.second && this.first.findAllServices() != null;
+	}
+
+}
@@ -15,6 +15,9 @@
  */
 package org.springframework.cfenv.jdbc;
 
+import java.util.Locale;
+import java.util.function.Function;
+
 import org.springframework.cfenv.core.CfCredentials;
 import org.springframework.cfenv.core.CfService;
 
@@ -25,6 +28,18 @@ public abstract class AbstractJdbcUrlCreator implements JdbcUrlCreator {
 
 	public static final String JDBC_PREFIX = "jdbc:";
 
+	/**
+	 * Prefix of properties that configure the JDBC URL created for a single service, e.g.
+	 * {@code cfenv.jdbc.service.mysql.profile}.
+	 */
+	public static final String SERVICE_PROPERTY_PREFIX = "cfenv.jdbc.service.";
+
+	/**
+	 * Service property enabling TLS with the CA certificate of the service credentials,
+	 * e.g. {@code cfenv.jdbc.service.mysql.ssl=true}.
+	 */
+	public static final String SSL_PROPERTY = "ssl";
+
 	protected boolean jdbcUrlMatchesScheme(CfService cfService, String... uriSchemes) {
 		CfCredentials cfCredentials = cfService.getCredentials();
 		String jdbcUrl = (String) cfCredentials.getMap().get("jdbcUrl");
@@ -38,4 +53,63 @@ public abstract class AbstractJdbcUrlCreator implements JdbcUrlCreator {
 		return false;
 	}
 
+	/**
+	 * Return the value of a configuration property scoped to the name of the given service.
+	 * @param propertyResolver resolves configuration properties by name
+	 * @param cfService the service the property applies to
+	 * @param property the name of the property below the service prefix
+	 * @return the value of the property or {@code null} if not set
+	 */
+	protected String getServiceProperty(Function<String, String> propertyResolver, CfService cfService,
+			String property) {
+		String serviceName = cfService.getName();
+		if (propertyResolver == null || serviceName == null) {
+			return null;
+		}
+		return propertyResolver.apply(SERVICE_PROPERTY_PREFIX + serviceName + "." + property);
+	}
+
+	/**
+	 * Return whether TLS is enabled for the given service with the {@link #SSL_PROPERTY}.
+	 * @param propertyResolver resolves configuration properties by name
+	 * @param cfService the service
+	 * @return {@code true} if the driver should connect with TLS
+	 */
+	protected boolean isSslEnabled(Function<String, String> propertyResolver, CfService cfService) {
+		return Boolean.parseBoolean(getServiceProperty(propertyResolver, cfService, SSL_PROPERTY));
+	}
+
+	/**
+	 * Append query parameters to a JDBC URL, skipping parameters whose name is already
+	 * present in the URL so that values supplied by the service broker are kept.
+	 * @param jdbcUrl the JDBC URL
+	 * @param parameters parameters in query string form, e.g. {@code a=1&b=2}
+	 * @return the JDBC URL including the additional parameters
+	 */
+	protected String appendQueryParameters(String jdbcUrl, String parameters) {
+		if (parameters == null || parameters.isEmpty()) {
+			return jdbcUrl;
+		}
+		int queryStart = jdbcUrl.indexOf('?');
+		String query = (queryStart != -1) ? "&" + jdbcUrl.substring(queryStart + 1).toLowerCase(Locale.ROOT) + "&"
+				: "&";
+		StringBuilder url = new StringBuilder(jdbcUrl);
+		char separator = (queryStart != -1) ? '&' : '?';
+		for (String parameter : parameters.split("&")) {
+			if (parameter.isEmpty()) {
+				continue;
+			}
+			int equals = parameter.indexOf('=');
+			String name = (equals != -1) ? parameter.substring(0, equals) : parameter;
+			String lowerCaseName = name.toLowerCase(Locale.ROOT);
+			if (query.contains("&" + lowerCaseName + "=") || query.contains("&" + lowerCaseName + "&")) {
+				continue;
+			}
+			url.append(separator).append(parameter);
+			query = query + lowerCaseName + "=&";
+			separator = '&';
+		}
+		return url.toString();
+	}
+
 }
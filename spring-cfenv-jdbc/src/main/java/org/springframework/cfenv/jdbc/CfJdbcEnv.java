@@ -16,8 +16,11 @@
 package org.springframework.cfenv.jdbc;
 
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.VcapSource;
 
 /**
  * Subclass that adds methods specifc for easy access to JDBC related credentails.
@@ -25,22 +28,62 @@ import org.springframework.cfenv.core.CfEnv;
  */
 public class CfJdbcEnv extends CfEnv {
 
+	private final Function<String, String> propertyResolver;
+
 	public CfJdbcEnv() {
+		this(System::getProperty);
+	}
+
+	/**
+	 * Create a new instance that configures JDBC URLs using the given properties.
+	 * @param propertyResolver resolves configuration properties such as
+	 * {@code cfenv.jdbc.service.<service-name>.profile} by name, returning {@code null} for
+	 * properties that are not set
+	 */
+	public CfJdbcEnv(Function<String, String> propertyResolver) {
 		super();
+		this.propertyResolver = propertyResolver;
+	}
+
+	public CfJdbcEnv(VcapSource vcapSource) {
+		this(vcapSource, System::getProperty);
+	}
+
+	/**
+	 * Create a new instance reading the Cloud Foundry environment from the given source.
+	 * @param vcapSource the source of the {@code VCAP_SERVICES} and
+	 * {@code VCAP_APPLICATION} documents
+	 * @param propertyResolver resolves configuration properties by name, returning
+	 * {@code null} for properties that are not set
+	 */
+	public CfJdbcEnv(VcapSource vcapSource, Function<String, String> propertyResolver) {
+		super(vcapSource);
+		this.propertyResolver = propertyResolver;
 	}
 
 	public List<CfJdbcService> findJdbcServices() {
-		CfJdbcUrlCreator cfJdbcUrlCreator = new CfJdbcUrlCreator(this.findAllServices());
+		CfJdbcUrlCreator cfJdbcUrlCreator = new CfJdbcUrlCreator(this.findAllServices(), this.propertyResolver);
 		return cfJdbcUrlCreator.findJdbcServices();
 	}
 
+	/**
+	 * Return a stream of the JDBC services for the bound database services. The stream is
+	 * ordered and lazy: each bound service is only inspected, and its JDBC URL only
+	 * created, once the stream reaches it, so short-circuiting operations such as
+	 * {@code findFirst} skip the remaining services.
+	 * @return a stream of the JDBC services
+	 */
+	public Stream<CfJdbcService> streamJdbcServices() {
+		return CfJdbcUrlCreator.streamJdbcServices(this.streamServices(), this.propertyResolver);
+	}
+
 	public CfJdbcService findJdbcServiceByName(String... spec) {
-		CfJdbcUrlCreator cfJdbcUrlCreator = new CfJdbcUrlCreator(this.findServicesByName(spec));
+		CfJdbcUrlCreator cfJdbcUrlCreator = new CfJdbcUrlCreator(this.findServicesByName(spec), this.propertyResolver);
 		return cfJdbcUrlCreator.findJdbcServiceByName(spec);
 	}
 
 	public CfJdbcService findJdbcService() {
-		CfJdbcUrlCreator cfJdbcUrlCreator = new CfJdbcUrlCreator(this.findAllServices());
+		CfJdbcUrlCreator cfJdbcUrlCreator = new CfJdbcUrlCreator(this.findAllServices(), this.propertyResolver);
 		return cfJdbcUrlCreator.findJdbcService();
 	}
 
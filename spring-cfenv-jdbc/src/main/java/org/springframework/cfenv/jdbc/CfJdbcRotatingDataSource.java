@@ -0,0 +1,399 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.CfEnvChange;
+import org.springframework.cfenv.core.CfEnvListener;
+
+/**
+ * {@link DataSource} for a bound database service that replaces its connection pool when
+ * the credentials of the service change.
+ *
+ * <p>The instance registers itself as a listener of the given {@link CfJdbcEnv}, so a
+ * rotation starts when {@link CfEnv#refresh()} reports a change to the service. A new
+ * pool is then created by the pool factory and warmed on a background thread by
+ * borrowing as many connections as its minimum idle size at once, or a single test
+ * connection for pools other than HikariCP. Once the connections work, new connections
+ * are borrowed from the new pool. Connections already borrowed from the old pool stay
+ * usable, and the old pool is closed, if it is {@link AutoCloseable}, once it has no
+ * active connections left or at the latest when the drain timeout has passed. Active
+ * connections are only known for HikariCP pools, other pools are closed when the drain
+ * timeout has passed. If the new pool cannot connect it is discarded and the old pool
+ * stays in use.
+ *
+ * <p>Borrowing a connection only reads the current pool, so a rotation never blocks
+ * callers. Rotations requested after {@link #close()} fail, and a pool created by a
+ * rotation that was still running when the data source was closed is closed rather than
+ * switched to.
+ *
+ * @author agent
+ */
+public class CfJdbcRotatingDataSource implements DataSource, CfEnvListener, AutoCloseable {
+
+	private static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+	private static final long DRAIN_CHECK_INTERVAL_MILLIS = 100;
+
+	private static final boolean HIKARI_PRESENT = isPresent("com.zaxxer.hikari.HikariDataSource");
+
+	private final CfJdbcEnv cfJdbcEnv;
+
+	private final String serviceName;
+
+	private final Function<CfJdbcService, DataSource> poolFactory;
+
+	private final Duration drainTimeout;
+
+	private final ScheduledExecutorService executor;
+
+	private final AtomicReference<DataSource> dataSource = new AtomicReference<>();
+
+	private final Set<DataSource> drainingPools = ConcurrentHashMap.newKeySet();
+
+	private final Set<CompletableFuture<DataSource>> pendingRotations = ConcurrentHashMap.newKeySet();
+
+	private final Object monitor = new Object();
+
+	private boolean closed;
+
+	public CfJdbcRotatingDataSource(CfJdbcEnv cfJdbcEnv, String serviceName,
+			Function<CfJdbcService, DataSource> poolFactory) {
+		this(cfJdbcEnv, serviceName, poolFactory, DEFAULT_DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * Create a new instance and the initial pool.
+	 * @param cfJdbcEnv the environment to read the service from and listen to
+	 * @param serviceName the name of the database service
+	 * @param poolFactory creates a connection pool for the service
+	 * @param drainTimeout how long a replaced pool is kept open at most for connections
+	 * borrowed before the rotation
+	 */
+	public CfJdbcRotatingDataSource(CfJdbcEnv cfJdbcEnv, String serviceName,
+			Function<CfJdbcService, DataSource> poolFactory, Duration drainTimeout) {
+		this.cfJdbcEnv = cfJdbcEnv;
+		this.serviceName = serviceName;
+		this.poolFactory = poolFactory;
+		this.drainTimeout = drainTimeout;
+		this.executor = createExecutor();
+		this.dataSource.set(poolFactory.apply(cfJdbcEnv.findJdbcServiceByName(serviceName)));
+		cfJdbcEnv.addListener(this);
+	}
+
+	private static ScheduledExecutorService createExecutor() {
+		return Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "cfenv-datasource-rotation");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static boolean isPresent(String className) {
+		try {
+			Class.forName(className, false, CfJdbcRotatingDataSource.class.getClassLoader());
+			return true;
+		}
+		catch (ClassNotFoundException | LinkageError ex) {
+			return false;
+		}
+	}
+
+	@Override
+	public void onChange(CfEnv cfEnv, List<CfEnvChange> changes) {
+		for (CfEnvChange change : changes) {
+			if (this.serviceName.equals(change.getServiceName()) && change.getCurrent() != null) {
+				rotate();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Create, validate and switch to a new pool for the current credentials of the service.
+	 * @return a future completed with the new pool once it is in use, or completed
+	 * exceptionally if it could not be created or could not connect, or if the data source
+	 * is closed
+	 */
+	public CompletableFuture<DataSource> rotate() {
+		CompletableFuture<DataSource> rotation = new CompletableFuture<>();
+		synchronized (this.monitor) {
+			if (this.closed) {
+				rotation.completeExceptionally(closedException());
+				return rotation;
+			}
+			this.pendingRotations.add(rotation);
+			rotation.whenComplete((pool, ex) -> this.pendingRotations.remove(rotation));
+			try {
+				this.executor.execute(() -> rotate(rotation));
+			}
+			catch (RejectedExecutionException ex) {
+				rotation.completeExceptionally(ex);
+			}
+		}
+		return rotation;
+	}
+
+	private void rotate(CompletableFuture<DataSource> rotation) {
+		DataSource pool = createWarmPool(rotation);
+		if (pool != null) {
+			switchTo(pool, rotation);
+		}
+	}
+
+	/**
+	 * Create a pool for the current credentials and warm it, or return {@code null} and
+	 * fail the rotation if the credentials do not work.
+	 */
+	private DataSource createWarmPool(CompletableFuture<DataSource> rotation) {
+		DataSource pool = null;
+		try {
+			pool = this.poolFactory.apply(this.cfJdbcEnv.findJdbcServiceByName(this.serviceName));
+			warm(pool);
+		}
+		catch (Exception ex) {
+			closeQuietly(pool);
+			pool = null;
+			rotation.completeExceptionally(ex);
+		}
+		return pool;
+	}
+
+	/**
+	 * Borrow as many connections as the minimum idle size of the pool at once, so that
+	 * the pool holds them when it is switched to, and fail if they cannot be opened.
+	 */
+	private static void warm(DataSource pool) throws SQLException {
+		int connectionCount = HIKARI_PRESENT ? HikariPools.getMinimumIdle(pool) : 1;
+		List<Connection> connections = new ArrayList<>(connectionCount);
+		try {
+			for (int i = 0; i < connectionCount; i++) {
+				connections.add(pool.getConnection());
+			}
+		}
+		finally {
+			for (Connection connection : connections) {
+				connection.close();
+			}
+		}
+	}
+
+	private void switchTo(DataSource pool, CompletableFuture<DataSource> rotation) {
+		synchronized (this.monitor) {
+			if (this.closed) {
+				closeQuietly(pool);
+				rotation.completeExceptionally(closedException());
+			}
+			else {
+				DataSource previous = this.dataSource.getAndSet(pool);
+				this.drainingPools.add(previous);
+				scheduleDrain(previous, System.nanoTime() + this.drainTimeout.toNanos());
+				rotation.complete(pool);
+			}
+		}
+	}
+
+	/**
+	 * Check the given replaced pool again after a short interval if its active
+	 * connections are known, otherwise once the drain deadline has passed.
+	 */
+	private void scheduleDrain(DataSource pool, long deadline) {
+		long remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+		long delay = (getActiveConnections(pool) < 0) ? remaining : Math.min(DRAIN_CHECK_INTERVAL_MILLIS, remaining);
+		try {
+			this.executor.schedule(() -> drain(pool, deadline), delay, TimeUnit.MILLISECONDS);
+		}
+		catch (RejectedExecutionException ex) {
+			closeDrained(pool);
+		}
+	}
+
+	private void drain(DataSource pool, long deadline) {
+		if (getActiveConnections(pool) == 0 || deadline - System.nanoTime() <= 0) {
+			closeDrained(pool);
+		}
+		else if (this.drainingPools.contains(pool)) {
+			scheduleDrain(pool, deadline);
+		}
+	}
+
+	private void closeDrained(DataSource pool) {
+		if (this.drainingPools.remove(pool)) {
+			closeQuietly(pool);
+		}
+	}
+
+	/**
+	 * Return the number of connections borrowed from the given pool, or {@code -1} if it
+	 * is not known.
+	 */
+	private static int getActiveConnections(DataSource pool) {
+		return HIKARI_PRESENT ? HikariPools.getActiveConnections(pool) : -1;
+	}
+
+	private IllegalStateException closedException() {
+		return new IllegalStateException("Data source for service [" + this.serviceName + "] is closed");
+	}
+
+	/**
+	 * Return the pool new connections are currently borrowed from.
+	 * @return the current pool
+	 */
+	public DataSource getTargetDataSource() {
+		return this.dataSource.get();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return this.dataSource.get().getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return this.dataSource.get().getConnection(username, password);
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return this.dataSource.get().getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.dataSource.get().setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		this.dataSource.get().setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return this.dataSource.get().getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return this.dataSource.get().getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		return this.dataSource.get().unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || this.dataSource.get().isWrapperFor(iface);
+	}
+
+	/**
+	 * Stop listening for changes, fail pending rotations and close the current pool and
+	 * any pool still draining.
+	 */
+	@Override
+	public void close() {
+		synchronized (this.monitor) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+		}
+		this.cfJdbcEnv.removeListener(this);
+		this.executor.shutdownNow();
+		for (CompletableFuture<DataSource> rotation : this.pendingRotations) {
+			rotation.completeExceptionally(closedException());
+		}
+		for (DataSource pool : this.drainingPools) {
+			closeDrained(pool);
+		}
+		closeQuietly(this.dataSource.get());
+	}
+
+	private void closeQuietly(DataSource pool) {
+		if (pool instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) pool).close();
+			}
+			catch (Exception ex) {
+				// Ignore, the pool is no longer used
+			}
+		}
+	}
+
+	/**
+	 * Inner class so that the HikariCP types are only loaded when they are present.
+	 */
+	private static final class HikariPools {
+
+		private HikariPools() {
+		}
+
+		static int getMinimumIdle(DataSource pool) throws SQLException {
+			HikariDataSource hikariDataSource = unwrap(pool);
+			return (hikariDataSource != null) ? Math.max(1, hikariDataSource.getMinimumIdle()) : 1;
+		}
+
+		static int getActiveConnections(DataSource pool) {
+			int activeConnections = -1;
+			try {
+				HikariDataSource hikariDataSource = unwrap(pool);
+				if (hikariDataSource != null) {
+					HikariPoolMXBean poolBean = hikariDataSource.getHikariPoolMXBean();
+					// No pool bean until the first connection has been borrowed
+					activeConnections = (poolBean != null) ? poolBean.getActiveConnections() : 0;
+				}
+			}
+			catch (SQLException ex) {
+				// Not known, wait for the drain timeout
+			}
+			return activeConnections;
+		}
+
+		private static HikariDataSource unwrap(DataSource pool) throws SQLException {
+			return pool.isWrapperFor(HikariDataSource.class) ? pool.unwrap(HikariDataSource.class) : null;
+		}
+
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package org.springframework.cfenv.jdbc;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.cfenv.core.CfService;
@@ -24,10 +26,18 @@ import org.springframework.cfenv.core.CfService;
  */
 public class CfJdbcService extends CfService {
 
+	private List<String> replicaUrls = Collections.emptyList();
+
+	private Class<? extends JdbcUrlCreator> jdbcUrlCreatorType;
+
 	public CfJdbcService(Map<String, Object> serviceData) {
 		super(serviceData);
 	}
 
+	CfJdbcService(CfService cfService) {
+		super(cfService);
+	}
+
 	public String getUrl() {
 		return getCredentials().getDerivedCredentials().get("jdbcUrl");
 	}
@@ -43,4 +53,29 @@ public class CfJdbcService extends CfService {
 	public Object getDriverClassName() {
 		return getCredentials().getDerivedCredentials().get("driver-class-name");
 	}
+
+	/**
+	 * Return the JDBC URLs of the read replicas published in the credentials of the
+	 * service.
+	 * @return the read replica JDBC URLs, empty if the service has no read replicas
+	 */
+	public List<String> getReplicaUrls() {
+		return this.replicaUrls;
+	}
+
+	void setReplicaUrls(List<String> replicaUrls) {
+		this.replicaUrls = Collections.unmodifiableList(replicaUrls);
+	}
+
+	/**
+	 * Return the type of the {@link JdbcUrlCreator} that recognized this service.
+	 * @return the JDBC URL creator type
+	 */
+	public Class<? extends JdbcUrlCreator> getJdbcUrlCreatorType() {
+		return this.jdbcUrlCreatorType;
+	}
+
+	void setJdbcUrlCreatorType(Class<? extends JdbcUrlCreator> jdbcUrlCreatorType) {
+		this.jdbcUrlCreatorType = jdbcUrlCreatorType;
+	}
 }
@@ -16,44 +16,215 @@
 package org.springframework.cfenv.jdbc;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ServiceLoader;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfEnvFlightRecorder;
+import org.springframework.cfenv.core.CfEnvMetrics;
 import org.springframework.cfenv.core.CfService;
 
 /**
+ * Creates {@link CfJdbcService JDBC services} for the database services in a list of
+ * services, using the {@link JdbcUrlCreator} implementations listed in the
+ * {@code META-INF/spring-cfenv/jdbc-url-creators.properties} index of the context class
+ * loader, or else found with {@link java.util.ServiceLoader}. The creators are looked up
+ * once per class loader and shared, and a creator is only instantiated and asked about
+ * services that match its index keys.
+ *
+ * <p>Lists of at least {@code cfenv.jdbc.parallel-threshold} services, 512 by default,
+ * are split in one chunk per processor and the chunks are resolved concurrently. The
+ * order of the resulting JDBC services is the order of the list either way.
+ * {@link JdbcUrlCreator} implementations must therefore be thread-safe.
+ *
  * @author Mark Pollack
  */
 public class CfJdbcUrlCreator {
 
-	private List<CfJdbcService> cfJdbcServices;
+	public static final String PARALLEL_THRESHOLD_PROPERTY = "cfenv.jdbc.parallel-threshold";
+
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 512;
+
+	private final CfJdbcService[] cfJdbcServiceArray;
+
+	private final List<CfJdbcService> cfJdbcServices;
 
 	public CfJdbcUrlCreator(List<CfService> cfServices) {
-		List<JdbcUrlCreator> jdbcUrlCreators = new ArrayList<>();
-		Iterable<JdbcUrlCreator> jdbcUrlCreatorIterable = ServiceLoader.load(JdbcUrlCreator.class);
-		for (JdbcUrlCreator jdbcUrlCreator : jdbcUrlCreatorIterable) {
-			if (jdbcUrlCreator != null) {
-				jdbcUrlCreators.add(jdbcUrlCreator);
+		this(cfServices, System::getProperty);
+	}
+
+	/**
+	 * Create JDBC services for the database services in the given list.
+	 * @param cfServices the services to inspect
+	 * @param propertyResolver resolves configuration properties used when creating JDBC
+	 * URLs, returning {@code null} for properties that are not set
+	 */
+	public CfJdbcUrlCreator(List<CfService> cfServices, Function<String, String> propertyResolver) {
+		this(cfServices, propertyResolver, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create JDBC services for the database services in the given list.
+	 * @param cfServices the services to inspect
+	 * @param propertyResolver resolves configuration properties used when creating JDBC
+	 * URLs, returning {@code null} for properties that are not set
+	 * @param executor the executor used to resolve large lists of services concurrently
+	 */
+	public CfJdbcUrlCreator(List<CfService> cfServices, Function<String, String> propertyResolver,
+			Executor executor) {
+		long start = System.nanoTime();
+		JdbcUrlCreatorRegistry jdbcUrlCreators = JdbcUrlCreatorRegistry.get();
+		List<CfJdbcService> cfJdbcServices;
+		if (cfServices.size() >= getParallelThreshold(propertyResolver)) {
+			cfJdbcServices = createJdbcServicesConcurrently(cfServices, jdbcUrlCreators, propertyResolver, executor);
+		}
+		else {
+			cfJdbcServices = createJdbcServices(cfServices, jdbcUrlCreators, propertyResolver);
+		}
+		this.cfJdbcServiceArray = cfJdbcServices.toArray(new CfJdbcService[0]);
+		this.cfJdbcServices = Collections.unmodifiableList(Arrays.asList(this.cfJdbcServiceArray));
+		CfEnvMetrics.recordJdbcResolution(System.nanoTime() - start);
+	}
+
+	private int getParallelThreshold(Function<String, String> propertyResolver) {
+		if (propertyResolver == null) {
+			return DEFAULT_PARALLEL_THRESHOLD;
+		}
+		String threshold = propertyResolver.apply(PARALLEL_THRESHOLD_PROPERTY);
+		try {
+			return (threshold != null) ? Integer.parseInt(threshold.trim()) : DEFAULT_PARALLEL_THRESHOLD;
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value [" + threshold + "] for property " +
+					PARALLEL_THRESHOLD_PROPERTY, e);
+		}
+	}
+
+	private List<CfJdbcService> createJdbcServicesConcurrently(List<CfService> cfServices,
+			JdbcUrlCreatorRegistry jdbcUrlCreators, Function<String, String> propertyResolver, Executor executor) {
+		int chunkSize = Math.max(1, (cfServices.size() + Runtime.getRuntime().availableProcessors() - 1) /
+				Runtime.getRuntime().availableProcessors());
+		List<CompletableFuture<List<CfJdbcService>>> chunks = new ArrayList<>();
+		for (int from = 0; from < cfServices.size(); from += chunkSize) {
+			List<CfService> chunk = cfServices.subList(from, Math.min(from + chunkSize, cfServices.size()));
+			chunks.add(CompletableFuture.supplyAsync(() -> createJdbcServices(chunk, jdbcUrlCreators, propertyResolver),
+					executor));
+		}
+		List<CfJdbcService> cfJdbcServices = new ArrayList<>();
+		try {
+			for (CompletableFuture<List<CfJdbcService>> chunk : chunks) {
+				cfJdbcServices.addAll(chunk.join());
+			}
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
+			throw e;
 		}
-		this.cfJdbcServices = new ArrayList<>();
+		return cfJdbcServices;
+	}
+
+	private static List<CfJdbcService> createJdbcServices(List<CfService> cfServices,
+			JdbcUrlCreatorRegistry jdbcUrlCreators, Function<String, String> propertyResolver) {
+		List<CfJdbcService> cfJdbcServices = new ArrayList<>();
 		for (CfService cfService : cfServices) {
-			for (JdbcUrlCreator jdbcUrlCreator : jdbcUrlCreators) {
-				if (jdbcUrlCreator.isDatabaseService(cfService)) {
-					CfJdbcService cfJdbcService = new CfJdbcService(cfService.getMap());
-					String jdbcUrl = jdbcUrlCreator.createJdbcUrl(cfService);
-					cfJdbcService.getCredentials().getDerivedCredentials().put("driver-class-name", jdbcUrlCreator.getDriverClassName());
+			cfJdbcServices.addAll(createJdbcServices(cfService, jdbcUrlCreators, propertyResolver));
+		}
+		return cfJdbcServices;
+	}
+
+	/**
+	 * Return a stream of the JDBC services for the given services. The stream is lazy:
+	 * each service is only inspected, and its JDBC URL only created, once the stream
+	 * reaches it.
+	 * @param cfServices the services to inspect
+	 * @param propertyResolver resolves configuration properties used when creating JDBC
+	 * URLs, returning {@code null} for properties that are not set
+	 * @return a stream of the JDBC services
+	 */
+	static Stream<CfJdbcService> streamJdbcServices(Stream<CfService> cfServices,
+			Function<String, String> propertyResolver) {
+		JdbcUrlCreatorRegistry jdbcUrlCreators = JdbcUrlCreatorRegistry.get();
+		return cfServices.flatMap(
+				(cfService) -> createJdbcServices(cfService, jdbcUrlCreators, propertyResolver).stream());
+	}
+
+	private static List<CfJdbcService> createJdbcServices(CfService cfService, JdbcUrlCreatorRegistry jdbcUrlCreators,
+			Function<String, String> propertyResolver) {
+		List<CfJdbcService> cfJdbcServices = new ArrayList<>(1);
+		for (JdbcUrlCreator jdbcUrlCreator : jdbcUrlCreators.getJdbcUrlCreators(cfService)) {
+			JdbcUrlCreationEvent event = null;
+			if (CfEnvFlightRecorder.isAvailable()) {
+				event = new JdbcUrlCreationEvent();
+				event.begin();
+			}
+			boolean matched = false;
+			boolean succeeded = false;
+			try {
+				matched = jdbcUrlCreator.isDatabaseService(cfService);
+				if (matched) {
+					CfJdbcService cfJdbcService = new CfJdbcService(cfService);
+					String jdbcUrl = jdbcUrlCreator.createJdbcUrl(cfService, propertyResolver);
+					cfJdbcService.getCredentials().getDerivedCredentials().put("driver-class-name",
+							jdbcUrlCreator.getDriverClassName());
 					cfJdbcService.getCredentials().getDerivedCredentials().put("jdbcUrl", jdbcUrl);
-					this.cfJdbcServices.add(cfJdbcService);
+					cfJdbcService.setJdbcUrlCreatorType(jdbcUrlCreator.getClass());
+					cfJdbcService.setReplicaUrls(createReplicaUrls(jdbcUrlCreator, cfService, propertyResolver));
+					cfJdbcServices.add(cfJdbcService);
+				}
+				succeeded = true;
+			}
+			finally {
+				if (event != null && event.shouldCommit()) {
+					event.serviceName = cfService.getName();
+					event.creator = jdbcUrlCreator.getClass().getName();
+					event.matched = matched;
+					event.succeeded = succeeded;
+					event.commit();
 				}
 			}
 		}
+		return cfJdbcServices;
 	}
 
+	private static List<String> createReplicaUrls(JdbcUrlCreator jdbcUrlCreator, CfService cfService,
+			Function<String, String> propertyResolver) {
+		List<String> replicaUrls = new ArrayList<>();
+		for (CfCredentials replicaCredentials : cfService.getCredentials().getReplicaCredentials()) {
+			Map<String, Object> replicaServiceData = new LinkedHashMap<>(cfService.getMap());
+			replicaServiceData.put("credentials", replicaCredentials.getMap());
+			replicaUrls.add(jdbcUrlCreator.createJdbcUrl(new CfService(replicaServiceData), propertyResolver));
+		}
+		return replicaUrls;
+	}
+
+	/**
+	 * Return the JDBC services.
+	 * @return an unmodifiable list of the JDBC services
+	 */
 	public List<CfJdbcService> findJdbcServices() {
 		return this.cfJdbcServices;
 	}
 
+	/**
+	 * Return a stream of the JDBC services. The stream is ordered, sized and immutable and
+	 * splits evenly for parallel processing.
+	 * @return a stream of the JDBC services
+	 */
+	public Stream<CfJdbcService> streamJdbcServices() {
+		return Arrays.stream(this.cfJdbcServiceArray);
+	}
+
 	public CfJdbcService findJdbcServiceByName(String... spec) {
 		List<CfJdbcService> matchingJdbcServices = new ArrayList<>();
 		for (CfJdbcService cfJdbcService : this.cfJdbcServices) {
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event emitted for each {@link JdbcUrlCreator} checked against a
+ * service. When the creator matches, the duration includes building the JDBC URLs. The
+ * URL itself is not recorded as it contains credentials.
+ *
+ * @author agent
+ */
+@Name("org.springframework.cfenv.JdbcUrlCreation")
+@Label("JDBC URL Creation")
+@Category("Spring CF Env")
+@Description("Matching of a service by a JdbcUrlCreator and creation of its JDBC URL")
+@StackTrace(false)
+public class JdbcUrlCreationEvent extends Event {
+
+	@Label("Service Name")
+	public String serviceName;
+
+	@Label("Creator")
+	public String creator;
+
+	@Label("Matched")
+	public boolean matched;
+
+	@Label("Succeeded")
+	@Description("Whether the operation completed without an exception")
+	public boolean succeeded;
+
+}
@@ -15,10 +15,17 @@
  */
 package org.springframework.cfenv.jdbc;
 
+import java.util.function.Function;
+
 import org.springframework.cfenv.core.CfService;
 
 /**
  * Strategy interface for creating JDBC URL for various types of database services.
+ *
+ * <p>Implementations are registered in
+ * {@code META-INF/spring-cfenv/jdbc-url-creators.properties} with their order and the
+ * keys of the services they handle, or in {@code META-INF/services}. A single instance is
+ * shared per class loader, so implementations must be stateless or thread-safe.
  * @author Mark Pollack
  */
 public interface JdbcUrlCreator {
@@ -33,6 +40,18 @@ public interface JdbcUrlCreator {
 
 	String createJdbcUrl(CfService cfService);
 
+	/**
+	 * Create the JDBC URL for the provided service, taking into account configuration
+	 * supplied by the application such as driver performance parameters.
+	 * @param cfService a Cloud Foundry service
+	 * @param propertyResolver resolves configuration properties by name, returning
+	 * {@code null} for properties that are not set
+	 * @return the JDBC URL
+	 */
+	default String createJdbcUrl(CfService cfService, Function<String, String> propertyResolver) {
+		return createJdbcUrl(cfService);
+	}
+
 	String getDriverClassName();
 
 }
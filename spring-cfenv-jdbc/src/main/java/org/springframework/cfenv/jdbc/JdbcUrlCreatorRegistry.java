@@ -0,0 +1,327 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+import org.springframework.cfenv.core.CfService;
+
+/**
+ * Registry of the {@link JdbcUrlCreator} implementations visible to a class loader,
+ * built once per class loader from the index files at {@value #INDEX_LOCATION}.
+ *
+ * <p>Each index entry maps the class name of a creator to its order and, optionally, a
+ * comma separated list of dispatch keys, e.g.
+ * {@code com.example.OracleJdbcUrlCreator=300,oracle}. A creator is only instantiated
+ * once a service matches one of its keys, that is once the label, a tag, a credential
+ * name or the URI of the service contains the key ignoring case. Creators without keys
+ * match every service. Creators listed in {@code META-INF/services} but not in an index
+ * are added without keys after the indexed ones. Without any index file the registry
+ * falls back to {@link ServiceLoader}.
+ *
+ * <p>Registries are cached per class loader without keeping the class loader reachable:
+ * a registry only refers to its class loader weakly, and it only keeps creator instances
+ * strongly when their class is defined by the class loader of this class or one of its
+ * parents. Instances of other creators are held weakly and instantiated again if they
+ * have been collected.
+ *
+ * @author agent
+ */
+final class JdbcUrlCreatorRegistry {
+
+	static final String INDEX_LOCATION = "META-INF/spring-cfenv/jdbc-url-creators.properties";
+
+	static final String SERVICES_LOCATION = "META-INF/services/" + JdbcUrlCreator.class.getName();
+
+	private static final String[] URI_KEYS = { "uri", "url", "jdbcUrl" };
+
+	private static final Map<ClassLoader, JdbcUrlCreatorRegistry> REGISTRIES = new WeakHashMap<>();
+
+	private final WeakReference<ClassLoader> classLoader;
+
+	private final List<Entry> entries;
+
+	private JdbcUrlCreatorRegistry(ClassLoader classLoader, List<Entry> entries) {
+		this.classLoader = new WeakReference<>(classLoader);
+		this.entries = entries;
+	}
+
+	/**
+	 * Return the registry of the context class loader of the current thread.
+	 * @return the registry
+	 */
+	static JdbcUrlCreatorRegistry get() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return get((classLoader != null) ? classLoader : JdbcUrlCreatorRegistry.class.getClassLoader());
+	}
+
+	/**
+	 * Return the registry of the given class loader, creating it on first use.
+	 * @param classLoader the class loader to find creators with
+	 * @return the registry
+	 */
+	static JdbcUrlCreatorRegistry get(ClassLoader classLoader) {
+		synchronized (REGISTRIES) {
+			JdbcUrlCreatorRegistry registry = REGISTRIES.get(classLoader);
+			if (registry == null) {
+				registry = load(classLoader);
+				REGISTRIES.put(classLoader, registry);
+			}
+			return registry;
+		}
+	}
+
+	private static JdbcUrlCreatorRegistry load(ClassLoader classLoader) {
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		try {
+			for (URL index : Collections.list(classLoader.getResources(INDEX_LOCATION))) {
+				Properties properties = new Properties();
+				try (InputStream inputStream = index.openStream()) {
+					properties.load(inputStream);
+				}
+				for (String className : properties.stringPropertyNames()) {
+					entries.putIfAbsent(className, Entry.parse(className, properties.getProperty(className), index));
+				}
+			}
+			if (entries.isEmpty()) {
+				List<Entry> serviceLoaderEntries = new ArrayList<>();
+				for (JdbcUrlCreator jdbcUrlCreator : ServiceLoader.load(JdbcUrlCreator.class, classLoader)) {
+					serviceLoaderEntries.add(new Entry(jdbcUrlCreator));
+				}
+				return new JdbcUrlCreatorRegistry(classLoader, serviceLoaderEntries);
+			}
+			Enumeration<URL> services = classLoader.getResources(SERVICES_LOCATION);
+			while (services.hasMoreElements()) {
+				for (String className : readServiceNames(services.nextElement())) {
+					entries.putIfAbsent(className, new Entry(className, Integer.MAX_VALUE, new String[0]));
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Could not read the JdbcUrlCreator index", e);
+		}
+		List<Entry> sortedEntries = new ArrayList<>(entries.values());
+		sortedEntries.sort(Comparator.comparingInt((Entry entry) -> entry.order));
+		return new JdbcUrlCreatorRegistry(classLoader, Collections.unmodifiableList(sortedEntries));
+	}
+
+	static List<String> readServiceNames(URL services) throws IOException {
+		List<String> classNames = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(services.openStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int comment = line.indexOf('#');
+				String className = ((comment != -1) ? line.substring(0, comment) : line).trim();
+				if (!className.isEmpty()) {
+					classNames.add(className);
+				}
+			}
+		}
+		return classNames;
+	}
+
+	/**
+	 * Return the creators whose dispatch keys match the given service, in registry
+	 * order, instantiating them on first use.
+	 * @param cfService the service
+	 * @return the candidate creators for the service
+	 */
+	List<JdbcUrlCreator> getJdbcUrlCreators(CfService cfService) {
+		String dispatchText = null;
+		List<JdbcUrlCreator> jdbcUrlCreators = new ArrayList<>(2);
+		for (Entry entry : this.entries) {
+			if (entry.keys.length > 0 && dispatchText == null) {
+				dispatchText = getDispatchText(cfService);
+			}
+			if (entry.matches(dispatchText)) {
+				jdbcUrlCreators.add(entry.getInstance(this.classLoader));
+			}
+		}
+		return jdbcUrlCreators;
+	}
+
+	/**
+	 * Return all creators in registry order, instantiating them on first use.
+	 * @return the creators
+	 */
+	List<JdbcUrlCreator> getJdbcUrlCreators() {
+		List<JdbcUrlCreator> jdbcUrlCreators = new ArrayList<>(this.entries.size());
+		for (Entry entry : this.entries) {
+			jdbcUrlCreators.add(entry.getInstance(this.classLoader));
+		}
+		return jdbcUrlCreators;
+	}
+
+	/**
+	 * Return whether the given type stays loaded as long as this class, so that holding an
+	 * instance of it does not keep another class loader reachable.
+	 */
+	private static boolean isPinned(Class<?> type) {
+		ClassLoader typeClassLoader = type.getClassLoader();
+		if (typeClassLoader == null) {
+			return true;
+		}
+		for (ClassLoader classLoader = JdbcUrlCreatorRegistry.class.getClassLoader(); classLoader != null;
+				classLoader = classLoader.getParent()) {
+			if (classLoader == typeClassLoader) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getDispatchText(CfService cfService) {
+		StringBuilder text = new StringBuilder();
+		if (cfService.getLabel() != null) {
+			text.append(cfService.getLabel()).append('\n');
+		}
+		for (String tag : cfService.getTags()) {
+			text.append(tag).append('\n');
+		}
+		Map<String, Object> credentials = cfService.getCredentials().getMap();
+		if (credentials != null) {
+			for (String name : credentials.keySet()) {
+				text.append(name).append('\n');
+			}
+			for (String uriKey : URI_KEYS) {
+				Object uri = credentials.get(uriKey);
+				if (uri != null) {
+					text.append(uri).append('\n');
+				}
+			}
+		}
+		return text.toString().toLowerCase(Locale.ROOT);
+	}
+
+	private static final class Entry {
+
+		private final String className;
+
+		private final int order;
+
+		private final String[] keys;
+
+		private volatile JdbcUrlCreator instance;
+
+		private volatile WeakReference<JdbcUrlCreator> weakInstance;
+
+		Entry(String className, int order, String[] keys) {
+			this.className = className;
+			this.order = order;
+			this.keys = keys;
+		}
+
+		Entry(JdbcUrlCreator instance) {
+			this(instance.getClass().getName(), Integer.MAX_VALUE, new String[0]);
+			setInstance(instance);
+		}
+
+		static Entry parse(String className, String value, URL index) {
+			String[] parts = value.split(",");
+			List<String> keys = new ArrayList<>();
+			for (int i = 1; i < parts.length; i++) {
+				if (!parts[i].trim().isEmpty()) {
+					keys.add(parts[i].trim().toLowerCase(Locale.ROOT));
+				}
+			}
+			try {
+				return new Entry(className.trim(), Integer.parseInt(parts[0].trim()), keys.toArray(new String[0]));
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid order [" + parts[0] + "] for " + className + " in " + index, e);
+			}
+		}
+
+		boolean matches(String dispatchText) {
+			if (this.keys.length == 0) {
+				return true;
+			}
+			for (String key : this.keys) {
+				if (dispatchText.contains(key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		JdbcUrlCreator getInstance(WeakReference<ClassLoader> classLoader) {
+			JdbcUrlCreator jdbcUrlCreator = getInstance();
+			if (jdbcUrlCreator == null) {
+				synchronized (this) {
+					jdbcUrlCreator = getInstance();
+					if (jdbcUrlCreator == null) {
+						jdbcUrlCreator = instantiate(classLoader.get());
+						setInstance(jdbcUrlCreator);
+					}
+				}
+			}
+			return jdbcUrlCreator;
+		}
+
+		private JdbcUrlCreator getInstance() {
+			JdbcUrlCreator jdbcUrlCreator = this.instance;
+			if (jdbcUrlCreator == null) {
+				WeakReference<JdbcUrlCreator> weakInstance = this.weakInstance;
+				jdbcUrlCreator = (weakInstance != null) ? weakInstance.get() : null;
+			}
+			return jdbcUrlCreator;
+		}
+
+		private void setInstance(JdbcUrlCreator jdbcUrlCreator) {
+			if (isPinned(jdbcUrlCreator.getClass())) {
+				this.instance = jdbcUrlCreator;
+			}
+			else {
+				this.weakInstance = new WeakReference<>(jdbcUrlCreator);
+			}
+		}
+
+		private JdbcUrlCreator instantiate(ClassLoader classLoader) {
+			if (classLoader == null) {
+				throw new IllegalStateException("Could not instantiate JdbcUrlCreator " + this.className
+						+ ", its class loader has been collected");
+			}
+			try {
+				Class<?> type = Class.forName(this.className, false, classLoader);
+				return (JdbcUrlCreator) type.getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException | ClassCastException e) {
+				throw new IllegalStateException("Could not instantiate JdbcUrlCreator " + this.className, e);
+			}
+		}
+
+	}
+
+}
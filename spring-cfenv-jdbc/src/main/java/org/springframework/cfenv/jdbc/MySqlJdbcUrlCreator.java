@@ -15,11 +15,37 @@
  */
 package org.springframework.cfenv.jdbc;
 
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfEndpoint;
 import org.springframework.cfenv.core.CfService;
 import org.springframework.cfenv.core.UriInfo;
 
 /**
+ * Creates JDBC URLs for MySQL services.
+ *
+ * <p>A named performance profile can be selected for a service with the property
+ * {@code cfenv.jdbc.service.<service-name>.profile}. The driver parameters of the profile
+ * are added to the JDBC URL, except for parameters the service broker already supplies.
+ * The built in profiles are {@code oltp}, {@code batch} and {@code reporting}; profiles
+ * can be added or redefined with {@code cfenv.jdbc.mysql.profile.<profile-name>} set to
+ * the parameters in query string form.
+ *
+ * <p>For services that publish several hosts, {@code cfenv.jdbc.service.<service-name>.multi-host}
+ * selects the {@code replication}, {@code loadbalance} or {@code sequential} multi-host URL
+ * form of the driver so that connections are spread across all nodes.
+ *
+ * <p>With {@code cfenv.jdbc.service.<service-name>.ssl=true} the driver connects with TLS
+ * and verifies the server against the CA certificate of the credentials, read from the
+ * file shared through {@link CfCredentials#getCaCertificateFile()}.
+ *
  * @author Mark Pollack
  */
 public class MySqlJdbcUrlCreator extends AbstractJdbcUrlCreator {
@@ -30,6 +56,31 @@ public class MySqlJdbcUrlCreator extends AbstractJdbcUrlCreator {
 
 	public static final String MYSQL_LABEL = "mysql";
 
+	public static final String PROFILE_PROPERTY = "profile";
+
+	public static final String MULTI_HOST_PROPERTY = "multi-host";
+
+	public static final List<String> MULTI_HOST_MODES = Collections.unmodifiableList(
+			Arrays.asList("replication", "loadbalance", "sequential"));
+
+	public static final String PROFILE_DEFINITION_PREFIX = "cfenv.jdbc.mysql.profile.";
+
+	/**
+	 * Built in performance profiles, mapping the name of the profile to MariaDB Connector/J
+	 * parameters in query string form.
+	 */
+	public static final Map<String, String> PROFILES;
+
+	static {
+		Map<String, String> profiles = new LinkedHashMap<>();
+		profiles.put("oltp", "useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250"
+				+ "&prepStmtCacheSqlLimit=2048");
+		profiles.put("batch", "rewriteBatchedStatements=true&useBulkStmts=true&cachePrepStmts=true"
+				+ "&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048");
+		profiles.put("reporting", "useCompression=true&defaultFetchSize=1000&cachePrepStmts=true");
+		PROFILES = Collections.unmodifiableMap(profiles);
+	}
+
 	@Override
 	public boolean isDatabaseService(CfService cfService) {
 		// Match tags
@@ -50,14 +101,26 @@ public class MySqlJdbcUrlCreator extends AbstractJdbcUrlCreator {
 
 	@Override
 	public String createJdbcUrl(CfService cfService) {
+		return createJdbcUrl(cfService, System::getProperty);
+	}
+
+	@Override
+	public String createJdbcUrl(CfService cfService, Function<String, String> propertyResolver) {
 		CfCredentials cfCredentials = cfService.getCredentials();
 		String jdbcUrl = (String) cfCredentials.getMap().get("jdbcUrl");
-		if (jdbcUrl != null) {
-			return jdbcUrl;
-		}
-		else {
-			return buildJdbcUrlFromUriField(cfCredentials);
+		if (jdbcUrl == null) {
+			String multiHostMode = getMultiHostMode(cfService, propertyResolver);
+			List<CfEndpoint> endpoints = (multiHostMode != null) ? cfCredentials.getEndpoints()
+					: Collections.emptyList();
+			if (endpoints.size() > 1) {
+				jdbcUrl = buildMultiHostJdbcUrl(cfCredentials, multiHostMode, endpoints);
+			}
+			else {
+				jdbcUrl = buildJdbcUrlFromUriField(cfCredentials);
+			}
 		}
+		jdbcUrl = appendQueryParameters(jdbcUrl, getProfileParameters(cfService, propertyResolver));
+		return appendQueryParameters(jdbcUrl, getSslParameters(cfService, propertyResolver));
 	}
 
 	public String buildJdbcUrlFromUriField(CfCredentials cfCredentials) {
@@ -70,4 +133,81 @@ public class MySqlJdbcUrlCreator extends AbstractJdbcUrlCreator {
 				uriInfo.formatQuery());
 	}
 
+	/**
+	 * Build a JDBC URL listing all endpoints, e.g.
+	 * {@code jdbc:mysql:loadbalance://host1:3306,host2:3306/db}.
+	 * @param cfCredentials the credentials of the service
+	 * @param multiHostMode one of the {@link #MULTI_HOST_MODES}
+	 * @param endpoints the endpoints of the service
+	 * @return the JDBC URL
+	 */
+	public String buildMultiHostJdbcUrl(CfCredentials cfCredentials, String multiHostMode,
+			List<CfEndpoint> endpoints) {
+		String uri = cfCredentials.getUri(MYSQL_SCHEME);
+		UriInfo uriInfo = (uri != null) ? new UriInfo(uri) : null;
+		StringBuilder jdbcUrl = new StringBuilder(JDBC_PREFIX).append(MYSQL_SCHEME).append(':')
+				.append(multiHostMode).append("://");
+		for (int i = 0; i < endpoints.size(); i++) {
+			if (i > 0) {
+				jdbcUrl.append(',');
+			}
+			jdbcUrl.append(endpoints.get(i));
+		}
+		jdbcUrl.append('/');
+		String database = (uriInfo != null) ? uriInfo.getPath() : cfCredentials.getName();
+		if (database != null) {
+			jdbcUrl.append(database);
+		}
+		char separator = '?';
+		String username = cfCredentials.getUsername();
+		if (username != null) {
+			jdbcUrl.append("?user=").append(UriInfo.urlEncode(username));
+			String password = cfCredentials.getPassword();
+			if (password != null) {
+				jdbcUrl.append("&password=").append(UriInfo.urlEncode(password));
+			}
+			separator = '&';
+		}
+		if (uriInfo != null && uriInfo.getQuery() != null) {
+			jdbcUrl.append(separator).append(uriInfo.getQuery());
+		}
+		return jdbcUrl.toString();
+	}
+
+	private String getMultiHostMode(CfService cfService, Function<String, String> propertyResolver) {
+		String multiHostMode = getServiceProperty(propertyResolver, cfService, MULTI_HOST_PROPERTY);
+		if (multiHostMode == null || multiHostMode.isEmpty()) {
+			return null;
+		}
+		if (!MULTI_HOST_MODES.contains(multiHostMode)) {
+			throw new IllegalArgumentException("Unknown MySQL multi-host mode [" + multiHostMode
+					+ "] configured for service [" + cfService.getName() + "], expected one of " + MULTI_HOST_MODES);
+		}
+		return multiHostMode;
+	}
+
+	private String getSslParameters(CfService cfService, Function<String, String> propertyResolver) {
+		if (!isSslEnabled(propertyResolver, cfService)) {
+			return null;
+		}
+		Path caCertificateFile = cfService.getCredentials().getCaCertificateFile();
+		return (caCertificateFile != null) ? "useSsl=true&serverSslCert=" + caCertificateFile : "useSsl=true";
+	}
+
+	private String getProfileParameters(CfService cfService, Function<String, String> propertyResolver) {
+		String profile = getServiceProperty(propertyResolver, cfService, PROFILE_PROPERTY);
+		if (profile == null || profile.isEmpty()) {
+			return null;
+		}
+		String parameters = propertyResolver.apply(PROFILE_DEFINITION_PREFIX + profile);
+		if (parameters == null) {
+			parameters = PROFILES.get(profile);
+		}
+		if (parameters == null) {
+			throw new IllegalArgumentException("Unknown MySQL performance profile [" + profile
+					+ "] configured for service [" + cfService.getName() + "]");
+		}
+		return parameters;
+	}
+
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.nio.file.Path;
+import java.util.function.Function;
+
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.cfenv.core.UriInfo;
+
+/**
+ * Creates JDBC URLs for PostgreSQL services.
+ *
+ * <p>The PgJDBC parameters {@code reWriteBatchedInserts}, {@code prepareThreshold},
+ * {@code defaultRowFetchSize} and {@code binaryTransfer} are added to the JDBC URL when
+ * set with {@code cfenv.jdbc.service.<service-name>.<parameter>}, unless the service
+ * broker already supplies them.
+ *
+ * <p>With {@code cfenv.jdbc.service.<service-name>.ssl=true} the driver connects with TLS
+ * and verifies the server against the CA certificate of the credentials, read from the
+ * file shared through {@link CfCredentials#getCaCertificateFile()}.
+ *
+ * @author agent
+ */
+public class PostgresqlJdbcUrlCreator extends AbstractJdbcUrlCreator {
+
+	public static final String POSTGRESQL_SCHEME = "postgresql";
+
+	public static final String POSTGRES_SCHEME = "postgres";
+
+	public static final String[] POSTGRESQL_SCHEMES = { POSTGRESQL_SCHEME, POSTGRES_SCHEME };
+
+	public static final String[] POSTGRESQL_TAGS = { "postgresql", "postgres" };
+
+	public static final String POSTGRESQL_LABEL = "postgres";
+
+	/**
+	 * Driver parameters that can be enabled per service.
+	 */
+	public static final String[] PERFORMANCE_PARAMETERS = { "reWriteBatchedInserts", "prepareThreshold",
+			"defaultRowFetchSize", "binaryTransfer" };
+
+	@Override
+	public boolean isDatabaseService(CfService cfService) {
+		if (jdbcUrlMatchesScheme(cfService, POSTGRESQL_SCHEMES) ||
+				cfService.existsByTagIgnoreCase(POSTGRESQL_TAGS) ||
+				cfService.existsByLabelStartsWith(POSTGRESQL_LABEL) ||
+				cfService.existsByUriSchemeStartsWith(POSTGRESQL_SCHEMES) ||
+				cfService.existsByCredentialsContainsUriField(POSTGRESQL_SCHEMES)) {
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String getDriverClassName() {
+		return "org.postgresql.Driver";
+	}
+
+	@Override
+	public String createJdbcUrl(CfService cfService) {
+		return createJdbcUrl(cfService, System::getProperty);
+	}
+
+	@Override
+	public String createJdbcUrl(CfService cfService, Function<String, String> propertyResolver) {
+		CfCredentials cfCredentials = cfService.getCredentials();
+		String jdbcUrl = (String) cfCredentials.getMap().get("jdbcUrl");
+		if (jdbcUrl == null) {
+			jdbcUrl = buildJdbcUrlFromUriField(cfCredentials);
+		}
+		jdbcUrl = appendQueryParameters(jdbcUrl, getPerformanceParameters(cfService, propertyResolver));
+		return appendQueryParameters(jdbcUrl, getSslParameters(cfService, propertyResolver));
+	}
+
+	public String buildJdbcUrlFromUriField(CfCredentials cfCredentials) {
+		String uri = cfCredentials.getUri(POSTGRESQL_SCHEMES);
+		UriInfo uriInfo = (uri != null) ? new UriInfo(uri) : cfCredentials.getUriInfo(POSTGRESQL_SCHEME);
+		StringBuilder jdbcUrl = new StringBuilder(JDBC_PREFIX).append(POSTGRESQL_SCHEME).append("://")
+				.append(uriInfo.getHost());
+		if (uriInfo.getPort() != -1) {
+			jdbcUrl.append(':').append(uriInfo.getPort());
+		}
+		jdbcUrl.append('/');
+		if (uriInfo.getPath() != null) {
+			jdbcUrl.append(uriInfo.getPath());
+		}
+		char separator = '?';
+		if (uriInfo.getUsername() != null) {
+			jdbcUrl.append("?user=").append(UriInfo.urlEncode(uriInfo.getUsername()));
+			if (uriInfo.getPassword() != null) {
+				jdbcUrl.append("&password=").append(UriInfo.urlEncode(uriInfo.getPassword()));
+			}
+			separator = '&';
+		}
+		if (uriInfo.getQuery() != null) {
+			jdbcUrl.append(separator).append(uriInfo.getQuery());
+		}
+		return jdbcUrl.toString();
+	}
+
+	private String getSslParameters(CfService cfService, Function<String, String> propertyResolver) {
+		if (!isSslEnabled(propertyResolver, cfService)) {
+			return null;
+		}
+		Path caCertificateFile = cfService.getCredentials().getCaCertificateFile();
+		return (caCertificateFile != null) ? "ssl=true&sslmode=verify-full&sslrootcert=" + caCertificateFile
+				: "ssl=true&sslmode=require";
+	}
+
+	private String getPerformanceParameters(CfService cfService, Function<String, String> propertyResolver) {
+		StringBuilder parameters = new StringBuilder();
+		for (String parameter : PERFORMANCE_PARAMETERS) {
+			String value = getServiceProperty(propertyResolver, cfService, parameter);
+			if (value != null) {
+				if (parameters.length() > 0) {
+					parameters.append('&');
+				}
+				parameters.append(parameter).append('=').append(UriInfo.urlEncode(value));
+			}
+		}
+		return parameters.toString();
+	}
+
+}
@@ -148,6 +148,12 @@ public class AbstractJdbcTests {
 		return payload;
 	}
 
+	protected String withCaCertificate(String servicePayload) {
+		String caCertificate = readTestDataFile("test-ca-certificate.pem").replace("\n", "\\n");
+		return servicePayload.replace("\"credentials\": {",
+				"\"credentials\": { \"ca_certificate\": \"" + caCertificate + "\\n\",");
+	}
+
 	protected String readTestDataFile(String fileName) {
 		Scanner scanner = null;
 		try {
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cfenv.core.FileVcapSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * @author agent
+ */
+public class CfJdbcRotatingDataSourceTests {
+
+	private static final String SERVICES = "{\"p-mysql\":[{\"name\":\"mysql\",\"label\":\"p-mysql\"," +
+			"\"credentials\":{\"uri\":\"mysql://user:%s@10.0.4.35:3306/db\"}}]}";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final List<DataSource> pools = new CopyOnWriteArrayList<>();
+
+	private final List<String> passwords = new CopyOnWriteArrayList<>();
+
+	private Path file;
+
+	private CfJdbcEnv cfJdbcEnv;
+
+	private CfJdbcRotatingDataSource dataSource;
+
+	@Before
+	public void setup() throws Exception {
+		this.file = this.temporaryFolder.getRoot().toPath().resolve("vcap-services.json");
+		writeServices("first", 1000);
+		this.cfJdbcEnv = new CfJdbcEnv(new FileVcapSource(this.file));
+	}
+
+	@After
+	public void close() {
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+	}
+
+	@Test
+	public void testRotationOnCredentialChange() throws Exception {
+		this.dataSource = new CfJdbcRotatingDataSource(this.cfJdbcEnv, "mysql", this::createPool, Duration.ZERO);
+		DataSource first = this.dataSource.getTargetDataSource();
+
+		writeServices("second", 2000);
+		this.cfJdbcEnv.refresh();
+
+		verify((AutoCloseable) first, timeout(5000)).close();
+		assertThat(this.passwords).containsExactly("first", "second");
+		assertThat(this.dataSource.getTargetDataSource()).isSameAs(this.pools.get(1));
+		assertThat(this.dataSource.getConnection()).isNotNull();
+	}
+
+	@Test
+	public void testFailedRotationKeepsCurrentPool() throws Exception {
+		this.dataSource = new CfJdbcRotatingDataSource(this.cfJdbcEnv, "mysql", (service) -> {
+			DataSource pool = createPool(service);
+			if (this.pools.size() > 1) {
+				try {
+					given(pool.getConnection()).willThrow(new SQLException("Access denied"));
+				}
+				catch (SQLException ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+			return pool;
+		}, Duration.ZERO);
+		DataSource first = this.dataSource.getTargetDataSource();
+
+		assertThatThrownBy(() -> this.dataSource.rotate().get()).isInstanceOf(ExecutionException.class)
+				.hasRootCauseInstanceOf(SQLException.class);
+		assertThat(this.dataSource.getTargetDataSource()).isSameAs(first);
+		verify((AutoCloseable) this.pools.get(1)).close();
+	}
+
+	@Test
+	public void testRotationAfterCloseFails() {
+		this.dataSource = new CfJdbcRotatingDataSource(this.cfJdbcEnv, "mysql", this::createPool, Duration.ZERO);
+		this.dataSource.close();
+
+		assertThatThrownBy(() -> this.dataSource.rotate().get()).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		assertThat(this.pools).hasSize(1);
+	}
+
+	@Test
+	public void testCloseDuringRotationClosesNewPool() throws Exception {
+		CountDownLatch connecting = new CountDownLatch(1);
+		CountDownLatch closed = new CountDownLatch(1);
+		this.dataSource = new CfJdbcRotatingDataSource(this.cfJdbcEnv, "mysql", (service) -> {
+			DataSource pool = createPool(service);
+			if (this.pools.size() > 1) {
+				try {
+					given(pool.getConnection()).willAnswer((invocation) -> {
+						connecting.countDown();
+						awaitUninterruptibly(closed);
+						return mock(Connection.class);
+					});
+				}
+				catch (SQLException ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+			return pool;
+		}, Duration.ZERO);
+		DataSource first = this.dataSource.getTargetDataSource();
+
+		CompletableFuture<DataSource> rotation = this.dataSource.rotate();
+		assertThat(connecting.await(5, TimeUnit.SECONDS)).isTrue();
+		this.dataSource.close();
+		closed.countDown();
+
+		assertThatThrownBy(rotation::get).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		verify((AutoCloseable) this.pools.get(1), timeout(5000)).close();
+		verify((AutoCloseable) first).close();
+		assertThat(this.dataSource.getTargetDataSource()).isSameAs(first);
+	}
+
+	@Test
+	public void testRotationWarmsNewPoolToMinimumIdle() throws Exception {
+		this.dataSource = new CfJdbcRotatingDataSource(this.cfJdbcEnv, "mysql", (service) -> {
+			DataSource pool = createPool(service);
+			HikariDataSource hikariDataSource = mock(HikariDataSource.class);
+			given(hikariDataSource.getMinimumIdle()).willReturn(3);
+			wrap(pool, hikariDataSource);
+			return pool;
+		}, Duration.ZERO);
+
+		DataSource second = this.dataSource.rotate().get(5, TimeUnit.SECONDS);
+
+		verify(second, times(3)).getConnection();
+	}
+
+	@Test
+	public void testDrainedPoolClosedOnceIdle() throws Exception {
+		this.dataSource = new CfJdbcRotatingDataSource(this.cfJdbcEnv, "mysql", (service) -> {
+			DataSource pool = createPool(service);
+			HikariPoolMXBean poolBean = mock(HikariPoolMXBean.class);
+			given(poolBean.getActiveConnections()).willReturn(1, 0);
+			HikariDataSource hikariDataSource = mock(HikariDataSource.class);
+			given(hikariDataSource.getHikariPoolMXBean()).willReturn(poolBean);
+			wrap(pool, hikariDataSource);
+			return pool;
+		}, Duration.ofHours(1));
+		DataSource first = this.dataSource.getTargetDataSource();
+
+		this.dataSource.rotate().get(5, TimeUnit.SECONDS);
+
+		verify((AutoCloseable) first, timeout(5000)).close();
+	}
+
+	private void wrap(DataSource pool, HikariDataSource hikariDataSource) {
+		try {
+			given(pool.isWrapperFor(HikariDataSource.class)).willReturn(true);
+			given(pool.unwrap(HikariDataSource.class)).willReturn(hikariDataSource);
+		}
+		catch (SQLException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private void awaitUninterruptibly(CountDownLatch latch) {
+		while (true) {
+			try {
+				latch.await();
+				return;
+			}
+			catch (InterruptedException ex) {
+				// Closing interrupts the rotation thread, keep waiting
+			}
+		}
+	}
+
+	private DataSource createPool(CfJdbcService cfJdbcService) {
+		DataSource pool = mock(DataSource.class, withSettings().extraInterfaces(AutoCloseable.class));
+		try {
+			given(pool.getConnection()).willReturn(mock(Connection.class));
+		}
+		catch (SQLException ex) {
+			throw new IllegalStateException(ex);
+		}
+		this.passwords.add(cfJdbcService.getPassword());
+		this.pools.add(pool);
+		return pool;
+	}
+
+	private void writeServices(String password, long lastModified) throws Exception {
+		Files.write(this.file, String.format(SERVICES, password).getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(this.file, FileTime.fromMillis(lastModified));
+	}
+
+}
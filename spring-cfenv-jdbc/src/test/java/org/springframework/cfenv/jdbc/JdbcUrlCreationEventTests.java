@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cfenv.core.CfEnvFlightRecorder;
+import org.springframework.cfenv.core.InMemoryVcapSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author agent
+ */
+public class JdbcUrlCreationEventTests {
+
+	private static final String EVENT_NAME = "org.springframework.cfenv.JdbcUrlCreation";
+
+	@Before
+	public void assumeFlightRecorder() {
+		assumeTrue(CfEnvFlightRecorder.isAvailable() && FlightRecorder.isAvailable());
+	}
+
+	@Test
+	public void eventCommittedForSuccessAndFailure() throws Exception {
+		String services = "{\"p.mysql\": [{\"name\": \"mysql\", \"label\": \"p.mysql\", \"tags\": [\"mysql\"],"
+				+ " \"credentials\": {\"jdbcUrl\": \"jdbc:mysql://10.0.4.35:3306/db?user=u&password=p\"}}]}";
+		// No port, so the MySQL URL cannot be built
+		String invalidServices = "{\"p.mysql\": [{\"name\": \"broken\", \"label\": \"p.mysql\", \"tags\": [\"mysql\"],"
+				+ " \"credentials\": {\"hostname\": \"10.0.4.35\"}}]}";
+		Path file = Files.createTempFile("cfenv", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable(EVENT_NAME).withoutThreshold();
+				recording.start();
+				new CfJdbcEnv(new InMemoryVcapSource(services), (name) -> null).findJdbcService();
+				assertThatThrownBy(
+						() -> new CfJdbcEnv(new InMemoryVcapSource(invalidServices), (name) -> null).findJdbcService())
+								.isInstanceOf(RuntimeException.class);
+				recording.stop();
+				recording.dump(file);
+			}
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+					.filter((event) -> event.getEventType().getName().equals(EVENT_NAME))
+					.filter((event) -> event.getBoolean("matched")).collect(Collectors.toList());
+			assertThat(events).hasSize(2);
+			assertThat(events.get(0).getString("serviceName")).isEqualTo("mysql");
+			assertThat(events.get(0).getString("creator")).isEqualTo(MySqlJdbcUrlCreator.class.getName());
+			assertThat(events.get(0).getBoolean("succeeded")).isTrue();
+			assertThat(events.get(1).getString("serviceName")).isEqualTo("broken");
+			assertThat(events.get(1).getBoolean("succeeded")).isFalse();
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cfenv.core.CfService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class JdbcUrlCreatorRegistryTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testRegistryIsCachedPerClassLoader() {
+		ClassLoader classLoader = getClass().getClassLoader();
+		assertThat(JdbcUrlCreatorRegistry.get(classLoader)).isSameAs(JdbcUrlCreatorRegistry.get(classLoader));
+	}
+
+	@Test
+	public void testCreatorsAreDispatchedByKey() {
+		JdbcUrlCreatorRegistry registry = JdbcUrlCreatorRegistry.get(getClass().getClassLoader());
+
+		assertThat(types(registry.getJdbcUrlCreators(service("p.mysql", "mysql://user:pass@db/app"))))
+				.containsExactly(MySqlJdbcUrlCreator.class);
+		assertThat(types(registry.getJdbcUrlCreators(service("elephantsql", "postgres://user:pass@db/app"))))
+				.containsExactly(PostgresqlJdbcUrlCreator.class);
+		assertThat(registry.getJdbcUrlCreators(service("p-redis", "redis://cache:6379"))).isEmpty();
+		assertThat(registry.getJdbcUrlCreators(service("user-provided", "jdbc:postgresql://db/app"))).hasSize(1);
+	}
+
+	@Test
+	public void testIndexedCreatorsAreOrderedAndInstantiatedLazily() throws Exception {
+		File root = this.temporaryFolder.getRoot();
+		write(root.toPath().resolve(JdbcUrlCreatorRegistry.INDEX_LOCATION),
+				IndexedJdbcUrlCreator.class.getName() + "=50,oracle\n");
+		write(root.toPath().resolve(JdbcUrlCreatorRegistry.SERVICES_LOCATION),
+				"# not indexed\n" + UnindexedJdbcUrlCreator.class.getName() + "\n");
+		IndexedJdbcUrlCreator.instances.set(0);
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() },
+				getClass().getClassLoader())) {
+			JdbcUrlCreatorRegistry registry = JdbcUrlCreatorRegistry.get(classLoader);
+
+			assertThat(types(registry.getJdbcUrlCreators(service("p-redis", "redis://cache:6379"))))
+					.containsExactly(UnindexedJdbcUrlCreator.class);
+			assertThat(IndexedJdbcUrlCreator.instances).hasValue(0);
+
+			List<JdbcUrlCreator> creators = registry.getJdbcUrlCreators(service("oracle", "oracle://db/app"));
+			assertThat(types(creators)).containsExactly(IndexedJdbcUrlCreator.class, UnindexedJdbcUrlCreator.class);
+			assertThat(registry.getJdbcUrlCreators(service("oracle", "oracle://db/app")).get(0))
+					.isSameAs(creators.get(0));
+			assertThat(IndexedJdbcUrlCreator.instances).hasValue(1);
+			assertThat(types(registry.getJdbcUrlCreators())).containsExactly(IndexedJdbcUrlCreator.class,
+					MySqlJdbcUrlCreator.class, PostgresqlJdbcUrlCreator.class, UnindexedJdbcUrlCreator.class);
+		}
+	}
+
+	@Test
+	public void testRegistryDoesNotKeepClassLoaderReachable() throws Exception {
+		File root = this.temporaryFolder.getRoot();
+		write(root.toPath().resolve(JdbcUrlCreatorRegistry.INDEX_LOCATION),
+				IndexedJdbcUrlCreator.class.getName() + "=50,oracle\n");
+		WeakReference<ClassLoader> classLoaderReference = loadRegistry(root);
+
+		for (int i = 0; i < 50 && classLoaderReference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+
+		assertThat(classLoaderReference.get()).isNull();
+	}
+
+	@Test
+	public void testIndexListsTheServiceLoaderCreators() throws Exception {
+		ClassLoader classLoader = JdbcUrlCreatorRegistry.class.getClassLoader();
+		Properties index = new Properties();
+		try (InputStream inputStream = classLoader.getResourceAsStream(JdbcUrlCreatorRegistry.INDEX_LOCATION)) {
+			index.load(inputStream);
+		}
+		List<String> services = JdbcUrlCreatorRegistry
+				.readServiceNames(classLoader.getResource(JdbcUrlCreatorRegistry.SERVICES_LOCATION));
+
+		// The index must be updated together with META-INF/services
+		assertThat(index.stringPropertyNames()).containsOnlyElementsOf(services).hasSameSizeAs(services);
+	}
+
+	private static WeakReference<ClassLoader> loadRegistry(File root) throws Exception {
+		URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() },
+				JdbcUrlCreatorRegistryTests.class.getClassLoader());
+		JdbcUrlCreatorRegistry.get(classLoader).getJdbcUrlCreators(service("oracle", "oracle://db/app"));
+		classLoader.close();
+		return new WeakReference<>(classLoader);
+	}
+
+	private static void write(Path file, String content) throws Exception {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static CfService service(String label, String uri) {
+		Map<String, Object> serviceData = new HashMap<>();
+		serviceData.put("name", label + "-service");
+		serviceData.put("label", label);
+		serviceData.put("tags", Collections.emptyList());
+		serviceData.put("credentials", Collections.singletonMap(uri.startsWith("jdbc:") ? "jdbcUrl" : "uri", uri));
+		return new CfService(serviceData);
+	}
+
+	private static List<Class<?>> types(List<JdbcUrlCreator> jdbcUrlCreators) {
+		Class<?>[] types = jdbcUrlCreators.stream().map(Object::getClass).toArray(Class<?>[]::new);
+		return Arrays.asList(types);
+	}
+
+	public static class IndexedJdbcUrlCreator extends UnindexedJdbcUrlCreator {
+
+		static final AtomicInteger instances = new AtomicInteger();
+
+		public IndexedJdbcUrlCreator() {
+			instances.incrementAndGet();
+		}
+
+	}
+
+	public static class UnindexedJdbcUrlCreator implements JdbcUrlCreator {
+
+		@Override
+		public boolean isDatabaseService(CfService cfService) {
+			return false;
+		}
+
+		@Override
+		public String createJdbcUrl(CfService cfService) {
+			return null;
+		}
+
+		@Override
+		public String createJdbcUrl(CfService cfService, Function<String, String> propertyResolver) {
+			return null;
+		}
+
+		@Override
+		public String getDriverClassName() {
+			return null;
+		}
+
+	}
+
+}
@@ -15,7 +15,12 @@
  */
 package org.springframework.cfenv.jdbc;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -168,6 +173,141 @@ public class MySqlJdbcTests extends AbstractJdbcTests {
 				.isEqualTo(jdbcUrlMysql);
 	}
 
+	@Test
+	public void mysqlServiceCreationWithProfile() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+						getMysqlServicePayload("mysql-1", hostname, port, username, password, name),
+						getMysqlServicePayload("mysql-2", hostname, port, username, password, name)));
+
+		Map<String, String> properties = new HashMap<>();
+		properties.put("cfenv.jdbc.service.mysql-1.profile", "oltp");
+		properties.put("cfenv.jdbc.service.mysql-2.profile", "custom");
+		properties.put("cfenv.jdbc.mysql.profile.custom", "useCompression=true&defaultFetchSize=50");
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(properties::get);
+
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql-1").getUrl()).isEqualTo(getExpectedJdbcUrl(MYSQL_SCHEME, name)
+				+ "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048");
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql-2").getUrl()).isEqualTo(getExpectedJdbcUrl(MYSQL_SCHEME, name)
+				+ "&useCompression=true&defaultFetchSize=50");
+	}
+
+	@Test
+	public void mysqlServiceCreationWithProfileKeepsBrokerParameters() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+						getMysqlServicePayloadWithJdbcUrlOnly("mysql", hostname, port, username, password, name)
+								.replace(name + "?", name + "?useCompression=false&")));
+
+		Map<String, String> properties = new HashMap<>();
+		properties.put("cfenv.jdbc.service.mysql.profile", "reporting");
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(properties::get);
+
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql").getUrl()).isEqualTo("jdbc:mysql://" + hostname + ":" + port
+				+ "/" + name + "?useCompression=false&user=" + username + "&password=" + password
+				+ "&defaultFetchSize=1000&cachePrepStmts=true");
+	}
+
+	@Test
+	public void mysqlServiceCreationWithSsl() throws Exception {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+				withCaCertificate(getMysqlServicePayload("mysql-1", hostname, port, username, password, name)),
+				getMysqlServicePayload("mysql-2", hostname, port, username, password, name)));
+
+		Map<String, String> properties = new HashMap<>();
+		properties.put("cfenv.jdbc.service.mysql-1.ssl", "true");
+		properties.put("cfenv.jdbc.service.mysql-2.ssl", "true");
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(properties::get);
+
+		Path caCertificateFile = cfJdbcEnv.findCredentialsByName("mysql-1").getCaCertificateFile();
+		assertThat(new String(Files.readAllBytes(caCertificateFile), StandardCharsets.US_ASCII))
+				.startsWith("-----BEGIN CERTIFICATE-----");
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql-1").getUrl()).isEqualTo(
+				getExpectedJdbcUrl(MYSQL_SCHEME, name) + "&useSsl=true&serverSslCert=" + caCertificateFile);
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql-2").getUrl()).isEqualTo(
+				getExpectedJdbcUrl(MYSQL_SCHEME, name) + "&useSsl=true");
+	}
+
+	@Test
+	public void mysqlServiceCreationWithUnknownProfile() {
+		mockVcapServices(getServicesPayload(
+						getMysqlServicePayload("mysql", hostname, port, username, password, "database")));
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(name -> name.endsWith(".profile") ? "blah" : null);
+
+		assertThatThrownBy(() -> {
+			cfJdbcEnv.findJdbcServiceByName("mysql");
+		}).isInstanceOf(IllegalArgumentException.class).hasMessage(
+				"Unknown MySQL performance profile [blah] configured for service [mysql]");
+	}
+
+	@Test
+	public void mysqlServiceCreationWithReplicaUris() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+				getRelationalPayload("test-mysql-info-with-replica-uris.json", "mysql", hostname, port, username,
+						password, name)));
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		CfJdbcService cfJdbcService = cfJdbcEnv.findJdbcServiceByName("mysql");
+		assertThat(cfJdbcService.getUrl()).isEqualTo(getExpectedJdbcUrl(MYSQL_SCHEME, name));
+		assertThat(cfJdbcService.getReplicaUrls()).containsExactly(
+				getExpectedMysqlJdbcUrl("10.20.30.41", port, name, username, password),
+				getExpectedMysqlJdbcUrl("10.20.30.42", port, name, username, password));
+	}
+
+	@Test
+	public void mysqlServiceCreationWithReplicaHosts() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+				getRelationalPayload("test-mysql-info-with-replica-hosts.json", "mysql", hostname, port, username,
+						password, name)));
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		CfJdbcService cfJdbcService = cfJdbcEnv.findJdbcServiceByName("mysql");
+		assertThat(cfJdbcService.getUrl()).isEqualTo(getExpectedJdbcUrl(MYSQL_SCHEME, name));
+		assertThat(cfJdbcService.getReplicaUrls()).containsExactly(
+				getExpectedMysqlJdbcUrl("10.20.30.41", port, name, username, password),
+				getExpectedMysqlJdbcUrl("10.20.30.42", 3307, name, username, password));
+	}
+
+	@Test
+	public void mysqlServiceCreationWithoutReplicas() {
+		mockVcapServices(getServicesPayload(
+				getMysqlServicePayload("mysql", hostname, port, username, password, "database")));
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql").getReplicaUrls()).isEmpty();
+	}
+
+	@Test
+	public void mysqlServiceCreationWithMultipleHosts() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+				getRelationalPayload("test-mysql-info-with-hosts.json", "mysql-1", hostname, port, username,
+						password, name),
+				getMysqlServicePayload("mysql-2", hostname, port, username, password, name)
+						.replace(hostname + ":" + port, hostname + ":" + port + ",10.20.30.41:" + port)));
+
+		Map<String, String> properties = new HashMap<>();
+		properties.put("cfenv.jdbc.service.mysql-1.multi-host", "loadbalance");
+		properties.put("cfenv.jdbc.service.mysql-2.multi-host", "replication");
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(properties::get);
+
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql-1").getUrl()).isEqualTo("jdbc:mysql:loadbalance://"
+				+ hostname + ":" + port + ",10.20.30.41:" + port + ",10.20.30.42:3307/" + name
+				+ "?user=" + username + "&password=" + password);
+		assertThat(cfJdbcEnv.findJdbcServiceByName("mysql-2").getUrl()).isEqualTo("jdbc:mysql:replication://"
+				+ hostname + ":" + port + ",10.20.30.41:" + port + "/" + name
+				+ "?user=" + username + "&password=" + password);
+
+		assertThatThrownBy(() -> {
+			new CfJdbcEnv(property -> property.endsWith("multi-host") ? "blah" : null).findJdbcServiceByName("mysql-1");
+		}).isInstanceOf(IllegalArgumentException.class).hasMessageContaining(
+				"Unknown MySQL multi-host mode [blah] configured for service [mysql-1]");
+	}
+
 	// Utility methods
 
 	private void assertJdbcServiceValues(String name1, String name2) {
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.jdbc;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.cfenv.core.UriInfo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cfenv.jdbc.PostgresqlJdbcUrlCreator.POSTGRES_SCHEME;
+
+/**
+ * @author agent
+ */
+public class PostgresqlJdbcTests extends AbstractJdbcTests {
+
+	@Test
+	public void postgresqlServiceCreation() {
+		String name1 = "database-1";
+		String name2 = "database-2";
+
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayload("postgres-1", hostname, port, username, password, name1),
+				getPostgresqlServicePayload("postgres-2", hostname, port, username, password, name2)));
+
+		assertJdbcServiceValues(name1, name2);
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		CfJdbcService cfJdbcService = cfJdbcEnv.findJdbcServiceByName("postgres-1");
+		assertThat(cfJdbcService.getUsername()).isEqualTo(username);
+		assertThat(cfJdbcService.getPassword()).isEqualTo(password);
+		assertThat(cfJdbcService.getDriverClassName()).isEqualTo("org.postgresql.Driver");
+	}
+
+	@Test
+	public void postgresqlServiceCreationWithLabelNoTags() {
+		String name1 = "database-1";
+		String name2 = "database-2";
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayloadWithLabelNoTags("postgres-1", hostname, port, username, password, name1),
+				getPostgresqlServicePayloadWithLabelNoTags("postgres-2", hostname, port, username, password, name2)));
+
+		assertJdbcServiceValues(name1, name2);
+	}
+
+	@Test
+	public void postgresqlServiceCreationNoLabelNoTags() {
+		String name1 = "database-1";
+		String name2 = "database-2";
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayloadNoLabelNoTags("postgres-1", hostname, port, username, password, name1),
+				getPostgresqlServicePayloadNoLabelNoTags("postgres-2", hostname, port, username, password, name2)));
+
+		assertJdbcServiceValues(name1, name2);
+	}
+
+	@Test
+	public void postgresqlServiceCreationNoLabelNoTagsWithSpecialChars() {
+		String name = "database";
+		String userWithSpecialChars = "u%u:u+";
+		String passwordWithSpecialChars = "p%p:p+";
+
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayloadNoLabelNoTags("postgres", hostname, port, userWithSpecialChars,
+						passwordWithSpecialChars, name)));
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		String jdbcUrl = cfJdbcEnv.findJdbcServiceByName("postgres").getUrl();
+
+		assertThat(getExpectedPostgresqlJdbcUrl(hostname, port, name, userWithSpecialChars, passwordWithSpecialChars))
+				.isEqualTo(jdbcUrl);
+	}
+
+	@Test
+	public void postgresqlServiceCreationWithLabelNoUri() {
+		String name1 = "database-1";
+		String name2 = "database-2";
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayloadWithLabelNoUri("postgres-1", hostname, port, username, password, name1),
+				getPostgresqlServicePayloadWithLabelNoUri("postgres-2", hostname, port, username, password, name2)));
+
+		assertJdbcServiceValues(name1, name2);
+	}
+
+	@Test
+	public void postgresqlServiceCreationWithJdbcUrl() {
+		String name1 = "database-1";
+		String name2 = "database-2";
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayloadWithJdbcUrl("postgres-1", hostname, port, username, password, name1),
+				getPostgresqlServicePayloadWithJdbcUrl("postgres-2", hostname, port, username, password, name2)));
+
+		assertJdbcServiceValues(name1, name2);
+	}
+
+	@Test
+	public void postgresqlServiceCreationWithJdbcUrlOnly() {
+		String name1 = "database-1";
+		String name2 = "database-2";
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayloadWithJdbcUrlOnly("postgres-1", hostname, port, username, password, name1),
+				getPostgresqlServicePayloadWithJdbcUrlOnly("postgres-2", hostname, port, username, password, name2)));
+
+		assertJdbcServiceValues(name1, name2);
+
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		CfJdbcService cfJdbcService = cfJdbcEnv.findJdbcServiceByName("postgres-1");
+		assertThat(cfJdbcService.getUsername()).isNull();
+		assertThat(cfJdbcService.getPassword()).isNull();
+		assertThat(cfJdbcService.getDriverClassName()).isEqualTo("org.postgresql.Driver");
+	}
+
+	@Test
+	public void postgresqlServiceCreationWithPerformanceParameters() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+				getPostgresqlServicePayload("postgres-1", hostname, port, username, password, name),
+				getPostgresqlServicePayloadWithJdbcUrlOnly("postgres-2", hostname, port, username, password, name)
+						.replace(name + "?", name + "?prepareThreshold=0&")));
+
+		Map<String, String> properties = new HashMap<>();
+		properties.put("cfenv.jdbc.service.postgres-1.reWriteBatchedInserts", "true");
+		properties.put("cfenv.jdbc.service.postgres-1.defaultRowFetchSize", "500");
+		properties.put("cfenv.jdbc.service.postgres-2.prepareThreshold", "3");
+		properties.put("cfenv.jdbc.service.postgres-2.binaryTransfer", "false");
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(properties::get);
+
+		assertThat(cfJdbcEnv.findJdbcServiceByName("postgres-1").getUrl()).isEqualTo(
+				getExpectedJdbcUrl(POSTGRES_SCHEME, name) + "&reWriteBatchedInserts=true&defaultRowFetchSize=500");
+		assertThat(cfJdbcEnv.findJdbcServiceByName("postgres-2").getUrl()).isEqualTo("jdbc:postgresql://" + hostname
+				+ ":" + port + "/" + name + "?prepareThreshold=0&user=" + username + "&password=" + password
+				+ "&binaryTransfer=false");
+	}
+
+	@Test
+	public void postgresqlServiceCreationWithSsl() {
+		String name = "database";
+		mockVcapServices(getServicesPayload(
+				withCaCertificate(getPostgresqlServicePayload("postgres-1", hostname, port, username, password, name)),
+				getPostgresqlServicePayload("postgres-2", hostname, port, username, password, name)));
+
+		Map<String, String> properties = new HashMap<>();
+		properties.put("cfenv.jdbc.service.postgres-1.ssl", "true");
+		properties.put("cfenv.jdbc.service.postgres-2.ssl", "true");
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv(properties::get);
+
+		Path caCertificateFile = cfJdbcEnv.findCredentialsByName("postgres-1").getCaCertificateFile();
+		assertThat(cfJdbcEnv.findJdbcServiceByName("postgres-1").getUrl()).isEqualTo(getExpectedJdbcUrl(
+				POSTGRES_SCHEME, name) + "&ssl=true&sslmode=verify-full&sslrootcert=" + caCertificateFile);
+		assertThat(cfJdbcEnv.findJdbcServiceByName("postgres-2").getUrl()).isEqualTo(
+				getExpectedJdbcUrl(POSTGRES_SCHEME, name) + "&ssl=true&sslmode=require");
+	}
+
+	// Utility methods
+
+	private void assertJdbcServiceValues(String name1, String name2) {
+		CfJdbcEnv cfJdbcEnv = new CfJdbcEnv();
+		String jdbcUrl1 = cfJdbcEnv.findJdbcServiceByName("postgres-1").getUrl();
+		String jdbcUrl2 = cfJdbcEnv.findJdbcServiceByName("postgres-2").getUrl();
+
+		assertThat(getExpectedJdbcUrl(POSTGRES_SCHEME, name1)).isEqualTo(jdbcUrl1);
+		assertThat(getExpectedJdbcUrl(POSTGRES_SCHEME, name2)).isEqualTo(jdbcUrl2);
+
+		List<CfJdbcService> cfJdbcServices = cfJdbcEnv.findJdbcServices();
+		assertThat(cfJdbcServices.size()).isEqualTo(2);
+
+		assertThatThrownBy(() -> {
+			cfJdbcEnv.findJdbcService().getUrl();
+		}).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("No unique database service found. Found database service names [postgres-1, postgres-2]");
+
+		CfJdbcService cfJdbcService = cfJdbcEnv.findJdbcServiceByName("postgres-1");
+		assertThat(cfJdbcService.getDriverClassName()).isEqualTo("org.postgresql.Driver");
+	}
+
+	private String getExpectedPostgresqlJdbcUrl(String hostname, int port, String name, String user,
+			String password) {
+		return "jdbc:postgresql://" + hostname + ":" + port + "/" + name + "?user=" + UriInfo.urlEncode(user)
+				+ "&password=" + UriInfo.urlEncode(password);
+	}
+
+	private String getPostgresqlServicePayload(String serviceName,
+			String hostname, int port,
+			String user, String password, String name) {
+		return getRelationalPayload("test-postgres-info.json", serviceName,
+				hostname, port, user, password, name);
+	}
+
+	private String getPostgresqlServicePayloadWithLabelNoTags(String serviceName,
+			String hostname, int port,
+			String user, String password, String name) {
+		return getRelationalPayload("test-postgres-info-with-label-no-tags.json", serviceName,
+				hostname, port, user, password, name);
+	}
+
+	private String getPostgresqlServicePayloadNoLabelNoTags(String serviceName,
+			String hostname, int port,
+			String user, String password, String name) {
+		return getRelationalPayload("test-postgres-info-no-label-no-tags.json", serviceName,
+				hostname, port, user, password, name);
+	}
+
+	private String getPostgresqlServicePayloadWithLabelNoUri(String serviceName,
+			String hostname, int port,
+			String user, String password, String name) {
+		return getRelationalPayload("test-postgres-info-with-label-no-uri.json", serviceName,
+				hostname, port, user, password, name);
+	}
+
+	private String getPostgresqlServicePayloadWithJdbcUrl(String serviceName,
+			String hostname, int port,
+			String user, String password, String name) {
+		return getRelationalPayload("test-postgres-info-jdbc-url.json", serviceName,
+				hostname, port, user, password, name);
+	}
+
+	private String getPostgresqlServicePayloadWithJdbcUrlOnly(String serviceName,
+			String hostname, int port,
+			String user, String password, String name) {
+		return getRelationalPayload("test-postgres-info-jdbc-url-only.json", serviceName,
+				hostname, port, user, password, name);
+	}
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor generating a {@code CfCredentialsBinder} for each type annotated
+ * with {@code @CfCredentialsBinding}. The generated binder, named after the type with a
+ * {@value #BINDER_SUFFIX} suffix, reads the credential map with plain method calls and is
+ * registered in {@code META-INF/services} so that no reflection is needed at runtime.
+ *
+ * @author agent
+ */
+@SupportedAnnotationTypes(CfCredentialsBindingProcessor.BINDING_ANNOTATION)
+public class CfCredentialsBindingProcessor extends AbstractProcessor {
+
+	static final String BINDING_ANNOTATION = "org.springframework.cfenv.core.CfCredentialsBinding";
+
+	static final String KEY_ANNOTATION = "org.springframework.cfenv.core.CfCredentialsKey";
+
+	static final String BINDER_INTERFACE = "org.springframework.cfenv.core.CfCredentialsBinder";
+
+	static final String BINDERS_CLASS = "org.springframework.cfenv.core.CfCredentialsBinders";
+
+	static final String BINDER_SUFFIX = "_CfCredentialsBinder";
+
+	/**
+	 * {@code CfCredentialsBinders} methods reading each supported type, keyed by the
+	 * primitive, array or erased declared type name.
+	 */
+	private static final Map<String, String> VALUE_METHODS;
+
+	/**
+	 * Wildcard types that generic values are cast through before the cast to the
+	 * property type.
+	 */
+	private static final Map<String, String> WILDCARD_TYPES;
+
+	static {
+		Map<String, String> valueMethods = new HashMap<>();
+		valueMethods.put("int", "getIntValue");
+		valueMethods.put("long", "getLongValue");
+		valueMethods.put("double", "getDoubleValue");
+		valueMethods.put("boolean", "getBooleanValue");
+		valueMethods.put("char[]", "getChars");
+		valueMethods.put("java.lang.Object", "getValue");
+		valueMethods.put("java.lang.String", "getString");
+		valueMethods.put("java.lang.Integer", "getInteger");
+		valueMethods.put("java.lang.Long", "getLong");
+		valueMethods.put("java.lang.Double", "getDouble");
+		valueMethods.put("java.lang.Boolean", "getBoolean");
+		valueMethods.put("java.util.List", "getList");
+		valueMethods.put("java.util.Map", "getMap");
+		VALUE_METHODS = Collections.unmodifiableMap(valueMethods);
+		Map<String, String> wildcardTypes = new HashMap<>();
+		wildcardTypes.put("java.util.List", "java.util.List<?>");
+		wildcardTypes.put("java.util.Map", "java.util.Map<?, ?>");
+		WILDCARD_TYPES = Collections.unmodifiableMap(wildcardTypes);
+	}
+
+	private final Set<String> binders = new TreeSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement bindingAnnotation = this.processingEnv.getElementUtils().getTypeElement(BINDING_ANNOTATION);
+		if (bindingAnnotation != null) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(bindingAnnotation)) {
+				try {
+					generateBinder(element);
+				}
+				catch (BindingException e) {
+					this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !this.binders.isEmpty()) {
+			writeServicesFile();
+		}
+		return false;
+	}
+
+	private void generateBinder(Element element) {
+		if (!element.getKind().isClass() || element.getKind() == ElementKind.ENUM) {
+			throw new BindingException("@CfCredentialsBinding is only supported on classes and records", element);
+		}
+		TypeElement type = (TypeElement) element;
+		Set<Modifier> modifiers = type.getModifiers();
+		if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+			throw new BindingException("@CfCredentialsBinding type must be concrete and not private", type);
+		}
+		if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+			throw new BindingException("@CfCredentialsBinding type must be a top level or static nested class", type);
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			throw new BindingException("@CfCredentialsBinding type must not declare type parameters", type);
+		}
+		String packageName = getPackage(type).getQualifiedName().toString();
+		String binderName = getBinderName(type);
+		String source = createSource(type, packageName, binderName);
+		String qualifiedBinderName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+		try (Writer writer = this.processingEnv.getFiler().createSourceFile(qualifiedBinderName, type).openWriter()) {
+			writer.write(source);
+		}
+		catch (IOException e) {
+			throw new BindingException("Could not write " + qualifiedBinderName + ": " + e.getMessage(), type);
+		}
+		this.binders.add(qualifiedBinderName);
+	}
+
+	private String createSource(TypeElement type, String packageName, String binderName) {
+		String typeName = type.getQualifiedName().toString();
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n * {@code ").append(BINDER_INTERFACE).append("} for {@link ").append(typeName)
+				.append("}, generated by ").append(getClass().getName()).append(".\n */\n");
+		source.append("public final class ").append(binderName).append(" implements ").append(BINDER_INTERFACE)
+				.append('<').append(typeName).append("> {\n\n");
+		source.append("\t@Override\n\tpublic Class<").append(typeName).append("> getType() {\n\t\treturn ")
+				.append(typeName).append(".class;\n\t}\n\n");
+		source.append("\t@Override\n\t@SuppressWarnings(\"unchecked\")\n\tpublic ").append(typeName)
+				.append(" bind(java.util.Map<String, Object> credentials) {\n");
+		ExecutableElement constructor = findBindingConstructor(type);
+		if (!constructor.getParameters().isEmpty()) {
+			source.append("\t\treturn new ").append(typeName).append('(');
+			List<? extends VariableElement> parameters = constructor.getParameters();
+			for (int i = 0; i < parameters.size(); i++) {
+				VariableElement parameter = parameters.get(i);
+				source.append((i > 0) ? ",\n\t\t\t\t" : "\n\t\t\t\t").append(
+						getValueExpression(parameter, parameter.asType(), getKeys(parameter, parameter.getSimpleName().toString())));
+			}
+			source.append(");\n");
+		}
+		else {
+			source.append("\t\t").append(typeName).append(" target = new ").append(typeName).append("();\n");
+			for (ExecutableElement setter : findSetters(type)) {
+				String name = setter.getSimpleName().toString();
+				String property = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+				VariableElement parameter = setter.getParameters().get(0);
+				String keys = getKeys(setter, property);
+				source.append("\t\tif (").append(BINDERS_CLASS).append(".contains(credentials, ").append(keys)
+						.append(")) {\n\t\t\ttarget.").append(name).append('(')
+						.append(getValueExpression(setter, parameter.asType(), keys)).append(");\n\t\t}\n");
+			}
+			source.append("\t\treturn target;\n");
+		}
+		source.append("\t}\n\n}\n");
+		return source.toString();
+	}
+
+	private ExecutableElement findBindingConstructor(TypeElement type) {
+		ExecutableElement noArgConstructor = null;
+		List<ExecutableElement> candidates = new ArrayList<>();
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				continue;
+			}
+			if (constructor.getParameters().isEmpty()) {
+				noArgConstructor = constructor;
+			}
+			else {
+				candidates.add(constructor);
+			}
+		}
+		if (candidates.size() == 1) {
+			return candidates.get(0);
+		}
+		if (noArgConstructor != null) {
+			return noArgConstructor;
+		}
+		throw new BindingException(candidates.isEmpty() ? "@CfCredentialsBinding type has no accessible constructor"
+				: "@CfCredentialsBinding type must have a single constructor with parameters or a no-argument "
+						+ "constructor", type);
+	}
+
+	private List<ExecutableElement> findSetters(TypeElement type) {
+		PackageElement typePackage = getPackage(type);
+		List<ExecutableElement> setters = new ArrayList<>();
+		for (ExecutableElement method : ElementFilter
+				.methodsIn(this.processingEnv.getElementUtils().getAllMembers(type))) {
+			String name = method.getSimpleName().toString();
+			Set<Modifier> modifiers = method.getModifiers();
+			if (name.length() > 3 && name.startsWith("set") && Character.isUpperCase(name.charAt(3))
+					&& method.getParameters().size() == 1 && !modifiers.contains(Modifier.STATIC)
+					&& !modifiers.contains(Modifier.PRIVATE)
+					&& (modifiers.contains(Modifier.PUBLIC) || getPackage(method).equals(typePackage))) {
+				setters.add(method);
+			}
+		}
+		return setters;
+	}
+
+	private String getValueExpression(Element element, TypeMirror type, String keys) {
+		String typeName = (type.getKind() == TypeKind.DECLARED)
+				? this.processingEnv.getTypeUtils().erasure(type).toString() : type.toString();
+		String method = VALUE_METHODS.get(typeName);
+		if (method == null) {
+			throw new BindingException("Unsupported credential type " + type + ", expected String, Object, char[], "
+					+ "int, long, double, boolean, their wrappers, List or Map", element);
+		}
+		String expression = BINDERS_CLASS + "." + method + "(credentials, " + keys + ")";
+		String wildcardType = WILDCARD_TYPES.get(typeName);
+		return (wildcardType != null) ? "(" + type + ") (" + wildcardType + ") " + expression : expression;
+	}
+
+	private String getKeys(Element element, String property) {
+		Set<String> keys = new LinkedHashSet<>();
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (annotation.getAnnotationType().toString().equals(KEY_ANNOTATION)) {
+				for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+						.getElementValues().entrySet()) {
+					Object value = entry.getValue().getValue();
+					if (value instanceof List) {
+						for (Object key : (List<?>) value) {
+							keys.add(((AnnotationValue) key).getValue().toString());
+						}
+					}
+					else {
+						keys.add(value.toString());
+					}
+				}
+			}
+		}
+		if (keys.isEmpty()) {
+			keys.add(property);
+			keys.add(toSnakeCase(property));
+		}
+		StringBuilder literals = new StringBuilder();
+		for (String key : keys) {
+			if (literals.length() > 0) {
+				literals.append(", ");
+			}
+			literals.append('"').append(key.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+		return literals.toString();
+	}
+
+	private void writeServicesFile() {
+		try {
+			FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					"META-INF/services/" + BINDER_INTERFACE);
+			try (Writer writer = file.openWriter()) {
+				for (String binder : this.binders) {
+					writer.write(binder);
+					writer.write('\n');
+				}
+			}
+		}
+		catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not register credential binders: " + e.getMessage());
+		}
+	}
+
+	private PackageElement getPackage(Element element) {
+		return this.processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	static String getBinderName(TypeElement type) {
+		StringBuilder name = new StringBuilder(type.getSimpleName());
+		Element enclosing = type.getEnclosingElement();
+		while (enclosing.getKind().isClass() || enclosing.getKind().isInterface()) {
+			name.insert(0, enclosing.getSimpleName() + "_");
+			enclosing = enclosing.getEnclosingElement();
+		}
+		return name.append(BINDER_SUFFIX).toString();
+	}
+
+	static String toSnakeCase(String property) {
+		StringBuilder snakeCase = new StringBuilder();
+		for (char c : property.toCharArray()) {
+			if (Character.isUpperCase(c)) {
+				snakeCase.append('_').append(Character.toLowerCase(c));
+			}
+			else {
+				snakeCase.append(c);
+			}
+		}
+		return snakeCase.toString();
+	}
+
+	private static final class BindingException extends RuntimeException {
+
+		private final Element element;
+
+		BindingException(String message, Element element) {
+			super(message);
+			this.element = element;
+		}
+
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.processor;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfCredentialsBinder;
+import org.springframework.cfenv.core.CfCredentialsBinders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class CfCredentialsBindingProcessorTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testConstructorBinding() throws Exception {
+		Class<?> type = compile("com.example.DatabaseCredentials",
+				"package com.example;",
+				"import java.util.List;",
+				"import org.springframework.cfenv.core.*;",
+				"@CfCredentialsBinding",
+				"public class DatabaseCredentials {",
+				"  public final String host; public final int port; public final char[] password;",
+				"  public final String caCertificate; public final List<String> hosts;",
+				"  public DatabaseCredentials(@CfCredentialsKey({\"hostname\", \"host\"}) String host, int port,",
+				"      char[] password, String caCertificate, List<String> hosts) {",
+				"    this.host = host; this.port = port; this.password = password;",
+				"    this.caCertificate = caCertificate; this.hosts = hosts;",
+				"  }",
+				"}");
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("host", "10.0.0.1");
+		credentials.put("port", "3306");
+		credentials.put("password", "secret");
+		credentials.put("ca_certificate", "-----BEGIN CERTIFICATE-----");
+		credentials.put("hosts", Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+		Object bound = new CfCredentials(credentials).bind(type);
+
+		assertThat(type.getField("host").get(bound)).isEqualTo("10.0.0.1");
+		assertThat(type.getField("port").get(bound)).isEqualTo(3306);
+		assertThat(type.getField("password").get(bound)).isEqualTo("secret".toCharArray());
+		assertThat(type.getField("caCertificate").get(bound)).isEqualTo("-----BEGIN CERTIFICATE-----");
+		assertThat(type.getField("hosts").get(bound)).isEqualTo(Arrays.asList("10.0.0.1", "10.0.0.2"));
+		assertThat(CfCredentialsBinders.getBinder(type).getClass().getName())
+				.isEqualTo("com.example.DatabaseCredentials_CfCredentialsBinder");
+	}
+
+	@Test
+	public void testSetterBinding() throws Exception {
+		Class<?> type = compile("com.example.Outer",
+				"package com.example;",
+				"import org.springframework.cfenv.core.*;",
+				"public class Outer {",
+				"  @CfCredentialsBinding",
+				"  public static class CacheCredentials {",
+				"    private String host; private Integer tlsPort = 6380; private boolean tls = true;",
+				"    public String getHost() { return host; }",
+				"    public void setHost(String host) { this.host = host; }",
+				"    public Integer getTlsPort() { return tlsPort; }",
+				"    public void setTlsPort(Integer tlsPort) { this.tlsPort = tlsPort; }",
+				"    public boolean isTls() { return tls; }",
+				"    @CfCredentialsKey(\"ssl\") public void setTls(boolean tls) { this.tls = tls; }",
+				"  }",
+				"}");
+		Class<?> nested = type.getClassLoader().loadClass("com.example.Outer$CacheCredentials");
+		CfCredentialsBinder<?> binder = CfCredentialsBinders.getBinder(nested);
+		assertThat(binder.getClass().getSimpleName()).isEqualTo("Outer_CacheCredentials_CfCredentialsBinder");
+
+		Object bound = binder.bind(Collections.singletonMap("host", "cache.example.com"));
+		assertThat(nested.getMethod("getHost").invoke(bound)).isEqualTo("cache.example.com");
+		assertThat(nested.getMethod("getTlsPort").invoke(bound)).isEqualTo(6380);
+		assertThat(nested.getMethod("isTls").invoke(bound)).isEqualTo(true);
+
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("tls_port", 7000);
+		credentials.put("ssl", false);
+		bound = binder.bind(credentials);
+		assertThat(nested.getMethod("getTlsPort").invoke(bound)).isEqualTo(7000);
+		assertThat(nested.getMethod("isTls").invoke(bound)).isEqualTo(false);
+	}
+
+	@Test
+	public void testUnsupportedTypes() throws Exception {
+		List<String> errors = compileWithErrors("com.example.Invalid",
+				"package com.example;",
+				"import org.springframework.cfenv.core.*;",
+				"@CfCredentialsBinding",
+				"public class Invalid {",
+				"  public Invalid(String host) { }",
+				"  public Invalid(String host, int port) { }",
+				"  @CfCredentialsBinding",
+				"  public abstract static class Abstract { }",
+				"  @CfCredentialsBinding",
+				"  public static class UnsupportedType { public UnsupportedType(java.net.URI uri) { } }",
+				"}");
+		assertThat(errors).containsExactlyInAnyOrder(
+				"@CfCredentialsBinding type must have a single constructor with parameters or a no-argument constructor",
+				"@CfCredentialsBinding type must be concrete and not private",
+				"Unsupported credential type java.net.URI, expected String, Object, char[], int, long, double, "
+						+ "boolean, their wrappers, List or Map");
+	}
+
+	@Test
+	public void testSnakeCase() {
+		assertThat(CfCredentialsBindingProcessor.toSnakeCase("clientCert")).isEqualTo("client_cert");
+		assertThat(CfCredentialsBindingProcessor.toSnakeCase("uri")).isEqualTo("uri");
+	}
+
+	private Class<?> compile(String className, String... lines) throws Exception {
+		File output = this.temporaryFolder.newFolder();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertThat(compile(output, diagnostics, className, lines)).describedAs(diagnostics.getDiagnostics().toString())
+				.isTrue();
+		URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toURI().toURL() },
+				getClass().getClassLoader());
+		return classLoader.loadClass(className);
+	}
+
+	private List<String> compileWithErrors(String className, String... lines) throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertThat(compile(this.temporaryFolder.newFolder(), diagnostics, className, lines)).isFalse();
+		return diagnostics.getDiagnostics().stream().filter((d) -> d.getKind() == Diagnostic.Kind.ERROR)
+				.map((d) -> d.getMessage(null)).collect(Collectors.toList());
+	}
+
+	private boolean compile(File output, DiagnosticCollector<JavaFileObject> diagnostics, String className,
+			String... lines) throws Exception {
+		Path source = this.temporaryFolder.getRoot().toPath().resolve("src").resolve(className.replace('.', '/') + ".java");
+		Files.createDirectories(source.getParent());
+		Files.write(source, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+		String classpath = Paths.get(CfCredentialsBinder.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+				.toString();
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+				StandardCharsets.UTF_8)) {
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+					Arrays.asList("-classpath", classpath, "-d", output.getPath()), null,
+					fileManager.getJavaFileObjects(source.toFile()));
+			task.setProcessors(Collections.singletonList(new CfCredentialsBindingProcessor()));
+			return task.call();
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.r2dbc;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.springframework.cfenv.core.CfCredentials;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.cfenv.core.UriInfo;
+import org.springframework.cfenv.jdbc.AbstractJdbcUrlCreator;
+import org.springframework.cfenv.jdbc.JdbcUrlCreator;
+
+/**
+ * Base class for {@link R2dbcUrlCreator} implementations that detect services with, and
+ * derive their URL from, the {@link JdbcUrlCreator} of the same database, so that JDBC and
+ * R2DBC bind exactly the same services.
+ *
+ * <p>The R2DBC URL keeps the host, port and database of the JDBC URL and carries the
+ * user and password in its user info. The JDBC URL is created with the same property
+ * resolver, so TLS settings such as {@code cfenv.jdbc.service.<service-name>.ssl} apply
+ * to both. JDBC driver parameters are only carried over when
+ * {@link #getR2dbcParameters(Map)} maps them to an R2DBC option, since R2DBC drivers do
+ * not understand them otherwise.
+ *
+ * @author agent
+ */
+public abstract class AbstractR2dbcUrlCreator implements R2dbcUrlCreator {
+
+	public static final String R2DBC_PREFIX = "r2dbc:";
+
+	private final JdbcUrlCreator jdbcUrlCreator;
+
+	private final String driver;
+
+	/**
+	 * Create a new instance.
+	 * @param jdbcUrlCreator the creator detecting services of the database
+	 * @param driver the R2DBC driver identifier, e.g. {@code postgresql}
+	 */
+	protected AbstractR2dbcUrlCreator(JdbcUrlCreator jdbcUrlCreator, String driver) {
+		this.jdbcUrlCreator = jdbcUrlCreator;
+		this.driver = driver;
+	}
+
+	@Override
+	public boolean isDatabaseService(CfService cfService) {
+		return this.jdbcUrlCreator.isDatabaseService(cfService);
+	}
+
+	@Override
+	public String createR2dbcUrl(CfService cfService, Function<String, String> propertyResolver) {
+		String jdbcUrl = this.jdbcUrlCreator.createJdbcUrl(cfService, propertyResolver);
+		return toR2dbcUrl(jdbcUrl, cfService.getCredentials());
+	}
+
+	/**
+	 * Convert a JDBC URL of the form
+	 * {@code jdbc:<scheme>://[user[:password]@]host[:port]/database[?parameters]} to an
+	 * R2DBC URL, moving {@code user} and {@code password} parameters to the user info and
+	 * the parameters mapped by {@link #getR2dbcParameters(Map)} to the query.
+	 * @param jdbcUrl the JDBC URL
+	 * @param cfCredentials the credentials providing the user and password if the JDBC
+	 * URL has none
+	 * @return the R2DBC URL
+	 */
+	protected String toR2dbcUrl(String jdbcUrl, CfCredentials cfCredentials) {
+		int schemeEnd = jdbcUrl.indexOf("://");
+		if (!jdbcUrl.startsWith(AbstractJdbcUrlCreator.JDBC_PREFIX) || schemeEnd == -1) {
+			throw new IllegalArgumentException("Cannot derive an R2DBC URL from JDBC URL [" + jdbcUrl + "]");
+		}
+		String rest = jdbcUrl.substring(schemeEnd + 3);
+		int queryStart = rest.indexOf('?');
+		String authority = (queryStart != -1) ? rest.substring(0, queryStart) : rest;
+		String user = null;
+		String password = null;
+		Map<String, String> jdbcParameters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		if (queryStart != -1) {
+			for (String parameter : rest.substring(queryStart + 1).split("&")) {
+				if (parameter.startsWith("user=")) {
+					user = decode(parameter.substring(5));
+				}
+				else if (parameter.startsWith("password=")) {
+					password = decode(parameter.substring(9));
+				}
+				else if (!parameter.isEmpty()) {
+					int equals = parameter.indexOf('=');
+					jdbcParameters.putIfAbsent((equals != -1) ? parameter.substring(0, equals) : parameter,
+							(equals != -1) ? parameter.substring(equals + 1) : "");
+				}
+			}
+		}
+		if (user == null) {
+			user = cfCredentials.getUsername();
+			password = cfCredentials.getPassword();
+		}
+		StringBuilder r2dbcUrl = new StringBuilder(R2DBC_PREFIX).append(this.driver).append("://");
+		if (user != null && authority.indexOf('@') == -1) {
+			r2dbcUrl.append(UriInfo.urlEncode(user));
+			if (password != null) {
+				r2dbcUrl.append(':').append(UriInfo.urlEncode(password));
+			}
+			r2dbcUrl.append('@');
+		}
+		r2dbcUrl.append(authority);
+		char separator = '?';
+		for (Map.Entry<String, String> option : getR2dbcParameters(jdbcParameters).entrySet()) {
+			r2dbcUrl.append(separator).append(option.getKey()).append('=').append(option.getValue());
+			separator = '&';
+		}
+		return r2dbcUrl.toString();
+	}
+
+	/**
+	 * Return the R2DBC options equivalent to the given JDBC driver parameters, typically
+	 * the TLS settings. Parameters without an equivalent are dropped.
+	 * @param jdbcParameters the parameters of the JDBC URL other than {@code user} and
+	 * {@code password}, with their names matched ignoring case and their values as they
+	 * appear in the URL
+	 * @return the R2DBC options to add to the query of the R2DBC URL
+	 */
+	protected Map<String, String> getR2dbcParameters(Map<String, String> jdbcParameters) {
+		return Collections.emptyMap();
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
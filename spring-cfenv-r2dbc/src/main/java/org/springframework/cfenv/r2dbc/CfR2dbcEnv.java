@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.r2dbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.cfenv.core.VcapSource;
+
+/**
+ * Subclass that adds methods for easy access to R2DBC URLs and connection factory options
+ * of bound database services. Services are detected exactly as for JDBC, see
+ * {@link AbstractR2dbcUrlCreator}. The {@link R2dbcUrlCreator} implementations are looked
+ * up once per class loader and shared.
+ *
+ * @author agent
+ */
+public class CfR2dbcEnv extends CfEnv {
+
+	private final Function<String, String> propertyResolver;
+
+	private final List<R2dbcUrlCreator> r2dbcUrlCreators;
+
+	public CfR2dbcEnv() {
+		this(System::getProperty);
+	}
+
+	/**
+	 * Create a new instance that configures R2DBC URLs using the given properties.
+	 * @param propertyResolver resolves configuration properties by name, returning
+	 * {@code null} for properties that are not set
+	 */
+	public CfR2dbcEnv(Function<String, String> propertyResolver) {
+		super();
+		this.propertyResolver = propertyResolver;
+		this.r2dbcUrlCreators = R2dbcUrlCreatorRegistry.getR2dbcUrlCreators();
+	}
+
+	public CfR2dbcEnv(VcapSource vcapSource) {
+		this(vcapSource, System::getProperty);
+	}
+
+	/**
+	 * Create a new instance reading the Cloud Foundry environment from the given source.
+	 * @param vcapSource the source of the {@code VCAP_SERVICES} and
+	 * {@code VCAP_APPLICATION} documents
+	 * @param propertyResolver resolves configuration properties by name, returning
+	 * {@code null} for properties that are not set
+	 */
+	public CfR2dbcEnv(VcapSource vcapSource, Function<String, String> propertyResolver) {
+		super(vcapSource);
+		this.propertyResolver = propertyResolver;
+		this.r2dbcUrlCreators = R2dbcUrlCreatorRegistry.getR2dbcUrlCreators();
+	}
+
+	/**
+	 * Return the R2DBC services for the bound database services.
+	 * @return an unmodifiable list of the R2DBC services
+	 */
+	public List<CfR2dbcService> findR2dbcServices() {
+		return createR2dbcServices(findAllServices());
+	}
+
+	public CfR2dbcService findR2dbcServiceByName(String... spec) {
+		List<CfR2dbcService> cfR2dbcServices = createR2dbcServices(findServicesByName(spec));
+		if (cfR2dbcServices.size() == 1) {
+			return cfR2dbcServices.get(0);
+		}
+		String specMessage = (spec == null) ? "null" : String.join(", ", spec);
+		if (cfR2dbcServices.size() > 1) {
+			throw new IllegalArgumentException("No unique database service matching by name [" + specMessage +
+					"] was found.  Matching service names are [" + getNames(cfR2dbcServices) + "]");
+		}
+		throw new IllegalArgumentException("No service with name [" + specMessage + "] was found.");
+	}
+
+	public CfR2dbcService findR2dbcService() {
+		List<CfR2dbcService> cfR2dbcServices = findR2dbcServices();
+		if (cfR2dbcServices.size() == 1) {
+			return cfR2dbcServices.get(0);
+		}
+		if (cfR2dbcServices.size() > 1) {
+			throw new IllegalArgumentException("No unique database service found. Found database service names [" +
+					getNames(cfR2dbcServices) + "]");
+		}
+		return null;
+	}
+
+	private List<CfR2dbcService> createR2dbcServices(List<CfService> cfServices) {
+		List<CfR2dbcService> cfR2dbcServices = new ArrayList<>();
+		for (CfService cfService : cfServices) {
+			for (R2dbcUrlCreator r2dbcUrlCreator : this.r2dbcUrlCreators) {
+				if (r2dbcUrlCreator.isDatabaseService(cfService)) {
+					CfR2dbcService cfR2dbcService = new CfR2dbcService(cfService.getMap());
+					cfR2dbcService.getCredentials().getDerivedCredentials().put("r2dbcUrl",
+							r2dbcUrlCreator.createR2dbcUrl(cfService, this.propertyResolver));
+					cfR2dbcService.setConnectionFactoryOptions(
+							r2dbcUrlCreator.createConnectionFactoryOptions(cfService, this.propertyResolver));
+					cfR2dbcService.setR2dbcUrlCreatorType(r2dbcUrlCreator.getClass());
+					cfR2dbcServices.add(cfR2dbcService);
+				}
+			}
+		}
+		return Collections.unmodifiableList(cfR2dbcServices);
+	}
+
+	private static String getNames(List<CfR2dbcService> cfR2dbcServices) {
+		return cfR2dbcServices.stream().map(CfService::getName).collect(Collectors.joining(", "));
+	}
+
+}
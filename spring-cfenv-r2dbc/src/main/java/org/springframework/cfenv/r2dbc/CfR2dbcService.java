@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.r2dbc;
+
+import java.util.Map;
+
+import io.r2dbc.spi.ConnectionFactoryOptions;
+
+import org.springframework.cfenv.core.CfService;
+
+/**
+ * A database service with the R2DBC URL and connection factory options derived from its
+ * credentials.
+ *
+ * @author agent
+ */
+public class CfR2dbcService extends CfService {
+
+	private ConnectionFactoryOptions connectionFactoryOptions;
+
+	private Class<? extends R2dbcUrlCreator> r2dbcUrlCreatorType;
+
+	public CfR2dbcService(Map<String, Object> serviceData) {
+		super(serviceData);
+	}
+
+	public String getUrl() {
+		return getCredentials().getDerivedCredentials().get("r2dbcUrl");
+	}
+
+	public String getUsername() {
+		return getCredentials().getUsername();
+	}
+
+	public String getPassword() {
+		return getCredentials().getPassword();
+	}
+
+	/**
+	 * Return the options to create an R2DBC {@code ConnectionFactory} for this service
+	 * with {@code ConnectionFactories.get(options)}.
+	 * @return the connection factory options
+	 */
+	public ConnectionFactoryOptions getConnectionFactoryOptions() {
+		return this.connectionFactoryOptions;
+	}
+
+	void setConnectionFactoryOptions(ConnectionFactoryOptions connectionFactoryOptions) {
+		this.connectionFactoryOptions = connectionFactoryOptions;
+	}
+
+	/**
+	 * Return the type of the {@link R2dbcUrlCreator} that recognized this service.
+	 * @return the R2DBC URL creator type
+	 */
+	public Class<? extends R2dbcUrlCreator> getR2dbcUrlCreatorType() {
+		return this.r2dbcUrlCreatorType;
+	}
+
+	void setR2dbcUrlCreatorType(Class<? extends R2dbcUrlCreator> r2dbcUrlCreatorType) {
+		this.r2dbcUrlCreatorType = r2dbcUrlCreatorType;
+	}
+
+}
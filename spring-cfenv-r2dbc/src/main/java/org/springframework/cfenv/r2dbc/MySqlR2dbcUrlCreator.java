@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.r2dbc;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.cfenv.jdbc.MySqlJdbcUrlCreator;
+
+/**
+ * Creates R2DBC URLs for the MySQL services detected by {@link MySqlJdbcUrlCreator}.
+ *
+ * <p>TLS parameters of the MariaDB and MySQL JDBC drivers become the {@code sslMode} and
+ * {@code sslCa} options: {@code sslMode} values are translated, {@code useSSL=true}
+ * requires TLS and {@code serverSslCert} also verifies the server against the given CA
+ * certificate, {@code useSSL=false} disables TLS.
+ *
+ * @author agent
+ */
+public class MySqlR2dbcUrlCreator extends AbstractR2dbcUrlCreator {
+
+	public static final String MYSQL_DRIVER = "mysql";
+
+	public MySqlR2dbcUrlCreator() {
+		super(new MySqlJdbcUrlCreator(), MYSQL_DRIVER);
+	}
+
+	@Override
+	protected Map<String, String> getR2dbcParameters(Map<String, String> jdbcParameters) {
+		Map<String, String> r2dbcParameters = new LinkedHashMap<>();
+		String caCertificate = jdbcParameters.get("serverSslCert");
+		String sslMode = getSslMode(jdbcParameters.get("sslMode"));
+		if (sslMode == null && jdbcParameters.containsKey("useSSL")) {
+			if (!Boolean.parseBoolean(jdbcParameters.get("useSSL"))) {
+				sslMode = "DISABLED";
+			}
+			else {
+				sslMode = (caCertificate != null) ? "VERIFY_IDENTITY" : "REQUIRED";
+			}
+		}
+		if (sslMode != null) {
+			r2dbcParameters.put("sslMode", sslMode);
+		}
+		if (caCertificate != null) {
+			r2dbcParameters.put("sslCa", caCertificate);
+		}
+		return r2dbcParameters;
+	}
+
+	private static String getSslMode(String jdbcSslMode) {
+		if (jdbcSslMode == null) {
+			return null;
+		}
+		switch (jdbcSslMode.toLowerCase(Locale.ROOT).replace('_', '-')) {
+		case "disable":
+		case "disabled":
+			return "DISABLED";
+		case "preferred":
+			return "PREFERRED";
+		case "trust":
+		case "required":
+			return "REQUIRED";
+		case "verify-ca":
+			return "VERIFY_CA";
+		case "verify-full":
+		case "verify-identity":
+			return "VERIFY_IDENTITY";
+		default:
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.r2dbc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.cfenv.jdbc.PostgresqlJdbcUrlCreator;
+
+/**
+ * Creates R2DBC URLs for the PostgreSQL services detected by
+ * {@link PostgresqlJdbcUrlCreator}.
+ *
+ * <p>The {@code sslmode}, {@code sslrootcert}, {@code sslcert}, {@code sslkey} and
+ * {@code sslpassword} JDBC parameters become the {@code sslMode}, {@code sslRootCert},
+ * {@code sslCert}, {@code sslKey} and {@code sslPassword} options. {@code ssl=true}
+ * without an {@code sslmode} means {@code verify-full}, as it does for the JDBC driver.
+ *
+ * @author agent
+ */
+public class PostgresqlR2dbcUrlCreator extends AbstractR2dbcUrlCreator {
+
+	public static final String POSTGRESQL_DRIVER = "postgresql";
+
+	private static final String[][] SSL_PARAMETERS = { { "sslrootcert", "sslRootCert" }, { "sslcert", "sslCert" },
+			{ "sslkey", "sslKey" }, { "sslpassword", "sslPassword" } };
+
+	public PostgresqlR2dbcUrlCreator() {
+		super(new PostgresqlJdbcUrlCreator(), POSTGRESQL_DRIVER);
+	}
+
+	@Override
+	protected Map<String, String> getR2dbcParameters(Map<String, String> jdbcParameters) {
+		Map<String, String> r2dbcParameters = new LinkedHashMap<>();
+		String sslMode = jdbcParameters.get("sslmode");
+		if (sslMode == null && Boolean.parseBoolean(jdbcParameters.get("ssl"))) {
+			sslMode = "verify-full";
+		}
+		if (sslMode != null) {
+			r2dbcParameters.put("sslMode", sslMode);
+		}
+		for (String[] sslParameter : SSL_PARAMETERS) {
+			String value = jdbcParameters.get(sslParameter[0]);
+			if (value != null) {
+				r2dbcParameters.put(sslParameter[1], value);
+			}
+		}
+		return r2dbcParameters;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.r2dbc;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of the {@link R2dbcUrlCreator} implementations found with {@link ServiceLoader}
+ * for a class loader, so that {@link CfR2dbcEnv} does not scan the class path on every
+ * construction.
+ *
+ * <p>As for JDBC URL creators, the cache does not keep class loaders reachable: the
+ * creators of a class loader are only held strongly when all their classes are defined
+ * by the class loader of this class or one of its parents, and are held weakly and
+ * loaded again if they have been collected otherwise.
+ *
+ * @author agent
+ */
+final class R2dbcUrlCreatorRegistry {
+
+	private static final Map<ClassLoader, Object> REGISTRIES = new WeakHashMap<>();
+
+	private R2dbcUrlCreatorRegistry() {
+	}
+
+	/**
+	 * Return the creators visible to the context class loader of the current thread.
+	 * @return an unmodifiable list of the creators
+	 */
+	static List<R2dbcUrlCreator> getR2dbcUrlCreators() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return getR2dbcUrlCreators(
+				(classLoader != null) ? classLoader : R2dbcUrlCreatorRegistry.class.getClassLoader());
+	}
+
+	/**
+	 * Return the creators visible to the given class loader, loading them on first use.
+	 * @param classLoader the class loader to find creators with
+	 * @return an unmodifiable list of the creators
+	 */
+	@SuppressWarnings("unchecked")
+	static List<R2dbcUrlCreator> getR2dbcUrlCreators(ClassLoader classLoader) {
+		synchronized (REGISTRIES) {
+			Object cached = REGISTRIES.get(classLoader);
+			List<R2dbcUrlCreator> r2dbcUrlCreators = (cached instanceof WeakReference)
+					? ((WeakReference<List<R2dbcUrlCreator>>) cached).get() : (List<R2dbcUrlCreator>) cached;
+			if (r2dbcUrlCreators == null) {
+				r2dbcUrlCreators = load(classLoader);
+				REGISTRIES.put(classLoader,
+						isPinned(r2dbcUrlCreators) ? r2dbcUrlCreators : new WeakReference<>(r2dbcUrlCreators));
+			}
+			return r2dbcUrlCreators;
+		}
+	}
+
+	/**
+	 * Return the number of class loaders with cached creators.
+	 * @return the number of cached registries
+	 */
+	static int getCachedRegistryCount() {
+		synchronized (REGISTRIES) {
+			return REGISTRIES.size();
+		}
+	}
+
+	private static List<R2dbcUrlCreator> load(ClassLoader classLoader) {
+		List<R2dbcUrlCreator> r2dbcUrlCreators = new ArrayList<>();
+		for (R2dbcUrlCreator r2dbcUrlCreator : ServiceLoader.load(R2dbcUrlCreator.class, classLoader)) {
+			r2dbcUrlCreators.add(r2dbcUrlCreator);
+		}
+		return Collections.unmodifiableList(r2dbcUrlCreators);
+	}
+
+	/**
+	 * Return whether the classes of all the given creators stay loaded as long as this
+	 * class.
+	 */
+	private static boolean isPinned(List<R2dbcUrlCreator> r2dbcUrlCreators) {
+		for (R2dbcUrlCreator r2dbcUrlCreator : r2dbcUrlCreators) {
+			if (!isPinned(r2dbcUrlCreator.getClass().getClassLoader())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isPinned(ClassLoader typeClassLoader) {
+		if (typeClassLoader == null) {
+			return true;
+		}
+		for (ClassLoader classLoader = R2dbcUrlCreatorRegistry.class.getClassLoader(); classLoader != null;
+				classLoader = classLoader.getParent()) {
+			if (classLoader == typeClassLoader) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
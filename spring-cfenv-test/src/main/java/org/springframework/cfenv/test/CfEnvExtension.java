@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.InMemoryVcapSource;
+import org.springframework.cfenv.core.VcapSource;
+
+/**
+ * JUnit Jupiter extension resolving {@link VcapSource} and {@link CfEnv} parameters
+ * from the nearest {@link VcapServices} annotation. Usually registered through
+ * {@link VcapServices} itself.
+ *
+ * <p>Every {@link CfEnv} is created for the parameter it resolves, so tests share no
+ * state and are safe to run concurrently.
+ *
+ * @author agent
+ */
+public class CfEnvExtension implements ParameterResolver {
+
+	public static final String CLASSPATH_PREFIX = "classpath:";
+
+	public static final String FILE_PREFIX = "file:";
+
+	@Override
+	public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+		Class<?> type = parameterContext.getParameter().getType();
+		return type == VcapSource.class || (CfEnv.class.isAssignableFrom(type) && getConstructor(type) != null);
+	}
+
+	@Override
+	public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+		VcapSource vcapSource = createVcapSource(extensionContext);
+		Class<?> type = parameterContext.getParameter().getType();
+		if (type == VcapSource.class) {
+			return vcapSource;
+		}
+		try {
+			return getConstructor(type).newInstance(vcapSource);
+		}
+		catch (InvocationTargetException e) {
+			throw new ParameterResolutionException("Could not create " + type.getName(), e.getCause());
+		}
+		catch (ReflectiveOperationException e) {
+			throw new ParameterResolutionException("Could not create " + type.getName(), e);
+		}
+	}
+
+	/**
+	 * Create the {@link VcapSource} for the given context from the {@link VcapServices}
+	 * annotation on the test method, the test class or one of its enclosing classes.
+	 * @param extensionContext the current extension context
+	 * @return the VCAP source, without services if no annotation is present
+	 */
+	public static VcapSource createVcapSource(ExtensionContext extensionContext) {
+		VcapServices vcapServices = findVcapServices(extensionContext);
+		if (vcapServices == null) {
+			return new InMemoryVcapSource(null);
+		}
+		ClassLoader classLoader = extensionContext.getTestClass().map(Class::getClassLoader)
+				.orElse(CfEnvExtension.class.getClassLoader());
+		return new InMemoryVcapSource(read(vcapServices.value(), classLoader),
+				read(vcapServices.application(), classLoader));
+	}
+
+	private static VcapServices findVcapServices(ExtensionContext extensionContext) {
+		Optional<ExtensionContext> context = Optional.of(extensionContext);
+		while (context.isPresent()) {
+			Optional<AnnotatedElement> element = context.get().getElement();
+			if (element.isPresent() && element.get().isAnnotationPresent(VcapServices.class)) {
+				return element.get().getAnnotation(VcapServices.class);
+			}
+			context = context.get().getParent();
+		}
+		return null;
+	}
+
+	private static String read(String value, ClassLoader classLoader) {
+		try {
+			if (value.startsWith(CLASSPATH_PREFIX)) {
+				String resource = value.substring(CLASSPATH_PREFIX.length());
+				if (resource.startsWith("/")) {
+					resource = resource.substring(1);
+				}
+				try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+					if (inputStream == null) {
+						throw new ParameterResolutionException("Class path resource [" + resource + "] does not exist");
+					}
+					return copyToString(inputStream);
+				}
+			}
+			if (value.startsWith(FILE_PREFIX)) {
+				byte[] bytes = Files.readAllBytes(Paths.get(value.substring(FILE_PREFIX.length())));
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+			return value;
+		}
+		catch (IOException e) {
+			throw new ParameterResolutionException("Could not read VCAP content from [" + value + "]", e);
+		}
+	}
+
+	private static String copyToString(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static Constructor<?> getConstructor(Class<?> type) {
+		try {
+			return type.getConstructor(VcapSource.class);
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
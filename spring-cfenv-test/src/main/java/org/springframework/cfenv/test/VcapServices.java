@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.VcapSource;
+
+/**
+ * Supplies the {@code VCAP_SERVICES}, and optionally {@code VCAP_APPLICATION}, content
+ * for a test class or test method. Test methods and constructors can then declare
+ * parameters of type {@link VcapSource}, {@link CfEnv} or any subclass of {@link CfEnv}
+ * with a public constructor taking a {@link VcapSource}, such as
+ * {@code CfJdbcEnv}.
+ *
+ * <p>The content is handed to {@link CfEnv} through a {@link VcapSource} rather than
+ * the process environment, so tests using it need no Java agent and can run in
+ * parallel.
+ *
+ * <p>Each value is either a {@code classpath:} location, a {@code file:} location or
+ * the JSON document itself. An annotation on a test method takes precedence over one on
+ * the test class.
+ *
+ * @author agent
+ * @see CfEnvExtension
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+@ExtendWith(CfEnvExtension.class)
+public @interface VcapServices {
+
+	/**
+	 * The {@code VCAP_SERVICES} content, empty for no services.
+	 * @return the location or JSON of the services
+	 */
+	String value() default "";
+
+	/**
+	 * The {@code VCAP_APPLICATION} content, empty for no application.
+	 * @return the location or JSON of the application
+	 */
+	String application() default "";
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.test;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.cfenv.core.CfEnv;
+import org.springframework.cfenv.core.CfService;
+import org.springframework.cfenv.core.VcapSource;
+import org.springframework.cfenv.jdbc.CfJdbcEnv;
+import org.springframework.cfenv.jdbc.CfJdbcService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+@VcapServices(value = "classpath:vcap-services.json", application = "classpath:vcap-application.json")
+public class CfEnvExtensionTests {
+
+	@Test
+	public void testCfEnvFromClassAnnotation(CfEnv cfEnv) {
+		assertThat(cfEnv.findAllServices()).extracting(CfService::getName).containsExactlyInAnyOrder("mysql", "redis");
+		assertThat(cfEnv.findServiceByName("mysql").getCredentials().getUsername()).isEqualTo("mysql_username");
+		assertThat(cfEnv.getApp().getApplicationName()).isEqualTo("styx-james");
+	}
+
+	@Test
+	public void testCfEnvSubclass(CfJdbcEnv cfJdbcEnv) {
+		assertThat(cfJdbcEnv.findJdbcServices()).extracting(CfJdbcService::getName).containsExactly("mysql");
+	}
+
+	@Test
+	public void testEachParameterGetsItsOwnCfEnv(CfEnv first, CfEnv second) {
+		assertThat(first).isNotSameAs(second);
+	}
+
+	@Test
+	@VcapServices("{\"p-redis\":[{\"name\":\"cache\",\"label\":\"p-redis\",\"credentials\":{\"host\":\"10.0.0.1\"}}]}")
+	public void testInlineJsonOnMethod(CfEnv cfEnv) {
+		assertThat(cfEnv.findAllServices()).extracting(CfService::getName).containsExactly("cache");
+		assertThat(cfEnv.getApp()).isNull();
+	}
+
+	@Test
+	public void testVcapSource(VcapSource vcapSource) {
+		assertThat(new CfEnv(vcapSource).findServiceByName("redis")).isNotNull();
+	}
+
+	@Nested
+	public class NestedTests {
+
+		@Test
+		public void testEnclosingAnnotation(CfEnv cfEnv) {
+			assertThat(cfEnv.findAllServices()).hasSize(2);
+		}
+
+	}
+
+	@Nested
+	@VcapServices
+	public class WithoutServicesTests {
+
+		@Test
+		public void testNoServices(CfEnv cfEnv) {
+			assertThat(cfEnv.findAllServices()).isEmpty();
+			assertThat(cfEnv.getApp()).isNull();
+		}
+
+	}
+
+}
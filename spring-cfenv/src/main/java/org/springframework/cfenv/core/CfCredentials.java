@@ -15,11 +15,19 @@
  */
 package org.springframework.cfenv.core;
 
+import java.nio.file.Path;
+import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
 
 /**
  * Access service credentials.
@@ -28,16 +36,55 @@ import java.util.Map;
  */
 public class CfCredentials {
 
+	/**
+	 * Credential keys under which brokers publish read replica endpoints.
+	 */
+	public static final String[] REPLICA_KEYS = { "read_replica_uris", "readReplicaUris", "replica_uris",
+			"replicas" };
+
+	/**
+	 * Credential keys under which brokers publish the PEM encoded CA certificate.
+	 */
+	public static final String[] CA_CERTIFICATE_KEYS = { "ca_certificate", "ca_cert", "sslca" };
+
+	/**
+	 * Credential keys under which brokers publish the PEM encoded client certificate.
+	 */
+	public static final String[] CLIENT_CERTIFICATE_KEYS = { "client_cert", "client_certificate" };
+
+	/**
+	 * Credential keys under which brokers publish the PEM encoded client private key.
+	 */
+	public static final String[] CLIENT_KEY_KEYS = { "client_key", "client_private_key" };
+
+	private static final List<String> CONNECTION_KEYS = Arrays.asList("host", "hostname", "hosts", "ports");
+
 	private final Map<String, Object> credentailsData;
 
 	private UriInfo uriInfo;
 
-	private Map<String, String> derivedCredentials = new HashMap<>();
+	private final Map<String, String> derivedCredentials = new DerivedCredentials();
+
+	private SslMaterial sslMaterial;
 
 	public CfCredentials(Map<String, Object> credentailsData) {
 		this.credentailsData = credentailsData;
 	}
 
+	/**
+	 * Create credentials sharing the data and the already parsed URI and SSL material of
+	 * the given credentials, starting with a copy of their derived credentials.
+	 * @param cfCredentials the credentials to share
+	 */
+	public CfCredentials(CfCredentials cfCredentials) {
+		this.credentailsData = cfCredentials.credentailsData;
+		synchronized (cfCredentials) {
+			this.uriInfo = cfCredentials.uriInfo;
+			this.sslMaterial = cfCredentials.sslMaterial;
+		}
+		this.derivedCredentials.putAll(cfCredentials.derivedCredentials);
+	}
+
 	private synchronized UriInfo createOrGetUriInfo() {
 		try {
 			if (uriInfo == null) {
@@ -52,13 +99,23 @@ public class CfCredentials {
 		return uriInfo;
 	}
 
+	private synchronized SslMaterial createOrGetSslMaterial() {
+		if (sslMaterial == null) {
+			sslMaterial = SslMaterial.get(getCaCertificate(), getString(CLIENT_CERTIFICATE_KEYS),
+					getString(CLIENT_KEY_KEYS));
+		}
+		return sslMaterial;
+	}
+
 	public Map<String, Object> getMap() {
 		return credentailsData;
 	}
 
 	/**
-	 * Get a map that all
-	 * @return
+	 * Return the map of credentials derived from the service credentials, such as a JDBC
+	 * URL. Putting a {@code null} value removes the key, so that {@code get} returns
+	 * {@code null} for it as it would for a value that is not set.
+	 * @return a thread-safe map of derived credentials
 	 */
 	public Map<String, String> getDerivedCredentials() {
 		return derivedCredentials;
@@ -78,6 +135,96 @@ public class CfCredentials {
 		return (uriInfo != null) ? uriInfo.getHost() : null;
 	}
 
+	/**
+	 * Return the hosts of all nodes of the service. Hosts are read from the key 'hosts',
+	 * either a list of strings, a list of objects with 'host' or 'hostname' and 'port'
+	 * fields or a comma separated string, then from a comma separated value under the keys
+	 * 'host' and 'hostname' and finally from the authority of the uri field. Endpoints
+	 * without a port use the port of the service.
+	 * @return the endpoints, empty if no host is found
+	 */
+	public List<CfEndpoint> getEndpoints() {
+		int defaultPort = parsePort(getPort());
+		Object hosts = (this.credentailsData != null) ? this.credentailsData.get("hosts") : null;
+		if (hosts != null) {
+			return parseEndpoints(hosts, defaultPort);
+		}
+		String hostList = getString("host", "hostname");
+		if (hostList == null) {
+			hostList = getUriAuthorityHosts();
+		}
+		return (hostList != null) ? parseEndpoints(hostList, defaultPort) : new ArrayList<>();
+	}
+
+	/**
+	 * Return the endpoints listed under the first of the given keys that is present in the
+	 * credential map, either as a list of strings, a list of objects with 'host' or
+	 * 'hostname' and 'port' fields or a comma separated string.
+	 * @param defaultPort the port of endpoints without one, -1 if unknown
+	 * @param keys the keys to look up
+	 * @return the endpoints, empty if none of the keys is present
+	 */
+	public List<CfEndpoint> getEndpoints(int defaultPort, String... keys) {
+		if (this.credentailsData != null) {
+			for (String key : keys) {
+				Object endpoints = this.credentailsData.get(key);
+				if (endpoints != null) {
+					return parseEndpoints(endpoints, defaultPort);
+				}
+			}
+		}
+		return new ArrayList<>();
+	}
+
+	private List<CfEndpoint> parseEndpoints(Object value, int defaultPort) {
+		List<CfEndpoint> endpoints = new ArrayList<>();
+		if (value instanceof List) {
+			for (Object host : (List<?>) value) {
+				if (host instanceof Map) {
+					Map<String, Object> hostData = new LinkedHashMap<>();
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) host).entrySet()) {
+						hostData.put(String.valueOf(entry.getKey()), entry.getValue());
+					}
+					CfCredentials hostCredentials = new CfCredentials(hostData);
+					String port = hostCredentials.getString("port");
+					endpoints.add(new CfEndpoint(hostCredentials.getString("host", "hostname"),
+							(port != null) ? parsePort(port) : defaultPort));
+				}
+				else if (host != null) {
+					endpoints.add(CfEndpoint.parse(host.toString(), defaultPort));
+				}
+			}
+			return endpoints;
+		}
+		for (String host : value.toString().split(",")) {
+			if (!host.trim().isEmpty()) {
+				endpoints.add(CfEndpoint.parse(host, defaultPort));
+			}
+		}
+		return endpoints;
+	}
+
+	private String getUriAuthorityHosts() {
+		UriInfo uriInfo = createOrGetUriInfo();
+		if (uriInfo == null) {
+			return null;
+		}
+		String authority = uriInfo.getUri().getRawAuthority();
+		if (authority == null) {
+			return null;
+		}
+		return authority.substring(authority.lastIndexOf('@') + 1);
+	}
+
+	private int parsePort(String port) {
+		try {
+			return (port != null) ? Integer.parseInt(port) : -1;
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
 	/**
 	 * Return the port, under the key 'port' in the credential map.  If it is not found try to obtain the port from
 	 * the uri field.
@@ -174,6 +321,178 @@ public class CfCredentials {
 		return uriInfo;
 	}
 
+	/**
+	 * Return the credentials of the read replicas of the service, published under one of
+	 * the {@link #REPLICA_KEYS} either as a list of URIs, a comma separated string of URIs
+	 * or a list of objects with their own connection fields. Each replica inherits the
+	 * fields of these credentials other than the host, multi-host and URI fields, for
+	 * example the port, username and password. Replica URIs without user info inherit the username and
+	 * password of the service.
+	 * @return the credentials of each read replica, empty if there are none
+	 */
+	public List<CfCredentials> getReplicaCredentials() {
+		Object replicas = null;
+		if (this.credentailsData != null) {
+			for (String key : REPLICA_KEYS) {
+				if (this.credentailsData.get(key) != null) {
+					replicas = this.credentailsData.get(key);
+					break;
+				}
+			}
+		}
+		if (replicas == null) {
+			return Collections.emptyList();
+		}
+		List<Object> replicaList = new ArrayList<>();
+		if (replicas instanceof List) {
+			replicaList.addAll((List<?>) replicas);
+		}
+		else {
+			for (String uri : replicas.toString().split(",")) {
+				if (!uri.trim().isEmpty()) {
+					replicaList.add(uri.trim());
+				}
+			}
+		}
+		Map<String, Object> inheritedData = new LinkedHashMap<>(this.credentailsData);
+		inheritedData.keySet().removeIf(key -> CONNECTION_KEYS.contains(key)
+				|| Arrays.asList(REPLICA_KEYS).contains(key)
+				|| key.toLowerCase().endsWith("uri") || key.toLowerCase().endsWith("url"));
+		String username = getUsername();
+		String password = getPassword();
+		List<CfCredentials> replicaCredentials = new ArrayList<>();
+		for (Object replica : replicaList) {
+			Map<String, Object> replicaData = new LinkedHashMap<>(inheritedData);
+			if (replica instanceof Map) {
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) replica).entrySet()) {
+					replicaData.put(String.valueOf(entry.getKey()), entry.getValue());
+				}
+				for (String key : new String[] { "uri", "url" }) {
+					if (replicaData.get(key) != null) {
+						replicaData.put(key, withUserInfo(replicaData.get(key).toString(), username, password));
+					}
+				}
+			}
+			else {
+				replicaData.put("uri", withUserInfo(replica.toString(), username, password));
+			}
+			replicaCredentials.add(new CfCredentials(replicaData));
+		}
+		return replicaCredentials;
+	}
+
+	/**
+	 * Add the given username and password to a URI that has no user info, so that a
+	 * replica URI inherits the credentials of the service.
+	 */
+	private static String withUserInfo(String uri, String username, String password) {
+		int authorityStart = uri.indexOf("://");
+		if (username == null || authorityStart == -1) {
+			return uri;
+		}
+		authorityStart += 3;
+		int authorityEnd = authorityStart;
+		while (authorityEnd < uri.length() && "/?#".indexOf(uri.charAt(authorityEnd)) == -1) {
+			authorityEnd++;
+		}
+		if (uri.substring(authorityStart, authorityEnd).contains("@")) {
+			return uri;
+		}
+		StringBuilder userInfo = new StringBuilder(UriInfo.urlEncode(username));
+		if (password != null) {
+			userInfo.append(':').append(UriInfo.urlEncode(password));
+		}
+		return uri.substring(0, authorityStart) + userInfo + "@" + uri.substring(authorityStart);
+	}
+
+	/**
+	 * Return the PEM encoded CA certificate, under one of the {@link #CA_CERTIFICATE_KEYS}
+	 * or, as published by the MySQL for PCF broker, under {@code tls.cert.ca}.
+	 * @return the CA certificate or {@code null} if not present
+	 */
+	public String getCaCertificate() {
+		String caCertificate = getString(CA_CERTIFICATE_KEYS);
+		if (caCertificate == null && this.credentailsData != null) {
+			Object tls = this.credentailsData.get("tls");
+			Object cert = (tls instanceof Map) ? ((Map<?, ?>) tls).get("cert") : null;
+			Object ca = (cert instanceof Map) ? ((Map<?, ?>) cert).get("ca") : null;
+			caCertificate = (ca != null) ? ca.toString() : null;
+		}
+		return caCertificate;
+	}
+
+	/**
+	 * Return a key store holding the CA certificate of the credentials. The key store is
+	 * created once and shared by all callers, and must not be modified.
+	 * @return the trust store or {@code null} if the credentials hold no CA certificate
+	 */
+	public KeyStore getTrustStore() {
+		return createOrGetSslMaterial().getTrustStore();
+	}
+
+	/**
+	 * Return a key store holding the client certificate and private key of the
+	 * credentials, with an empty key password. The key store is created once and shared
+	 * by all callers, and must not be modified.
+	 * @return the key store or {@code null} if the credentials hold no client certificate
+	 * and key
+	 */
+	public KeyStore getKeyStore() {
+		return createOrGetSslMaterial().getKeyStore();
+	}
+
+	/**
+	 * Return a trust manager factory initialized with {@link #getTrustStore()}.
+	 * @return the trust manager factory or {@code null} if the credentials hold no CA
+	 * certificate
+	 */
+	public TrustManagerFactory getTrustManagerFactory() {
+		return createOrGetSslMaterial().getTrustManagerFactory();
+	}
+
+	/**
+	 * Return a key manager factory initialized with {@link #getKeyStore()}.
+	 * @return the key manager factory or {@code null} if the credentials hold no client
+	 * certificate and key
+	 */
+	public KeyManagerFactory getKeyManagerFactory() {
+		return createOrGetSslMaterial().getKeyManagerFactory();
+	}
+
+	/**
+	 * Return a TLS context presenting the client certificate and trusting the CA
+	 * certificate of the credentials. Trust falls back to the JVM default when no CA
+	 * certificate is present. The context is created once and shared by all clients.
+	 * @return the SSL context or {@code null} if the credentials hold neither a CA
+	 * certificate nor a client certificate and key
+	 */
+	public SSLContext getSslContext() {
+		return createOrGetSslMaterial().getSslContext();
+	}
+
+	/**
+	 * Return a file holding the PEM encoded CA certificate, for drivers that are
+	 * configured with the path of their trust material. The file is written once for each
+	 * distinct certificate, shared by all credentials holding it, and deleted when the JVM
+	 * exits.
+	 * @return the path of the file or {@code null} if the credentials hold no CA
+	 * certificate
+	 */
+	public Path getCaCertificateFile() {
+		return createOrGetSslMaterial().getCaCertificateFile();
+	}
+
+	/**
+	 * Bind these credentials to an instance of a {@link CfCredentialsBinding} type, using
+	 * the binder generated for it at compile time.
+	 * @param type the type to bind to
+	 * @param <T> the bound type
+	 * @return the bound instance
+	 */
+	public <T> T bind(Class<T> type) {
+		return CfCredentialsBinders.bind(this, type);
+	}
+
 	public String getString(String... keys) {
 		if (this.credentailsData != null) {
 			for (String key : keys) {
@@ -185,4 +504,26 @@ public class CfCredentials {
 		return null;
 	}
 
+	/**
+	 * Concurrent map that removes keys put with a {@code null} value instead of
+	 * rejecting them.
+	 */
+	private static final class DerivedCredentials extends ConcurrentHashMap<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String put(String key, String value) {
+			return (value != null) ? super.put(key, value) : remove(key);
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ? extends String> map) {
+			for (Map.Entry<? extends String, ? extends String> entry : map.entrySet()) {
+				put(entry.getKey(), entry.getValue());
+			}
+		}
+
+	}
+
 }
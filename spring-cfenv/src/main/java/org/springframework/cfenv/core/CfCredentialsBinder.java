@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.util.Map;
+
+/**
+ * Binds a credential map to a {@link CfCredentialsBinding} type. Implementations are
+ * generated by the {@code spring-cfenv-processor} annotation processor and registered
+ * in {@code META-INF/services}.
+ *
+ * @param <T> the bound type
+ * @author agent
+ */
+public interface CfCredentialsBinder<T> {
+
+	/**
+	 * Return the type this binder creates.
+	 * @return the bound type
+	 */
+	Class<T> getType();
+
+	/**
+	 * Create an instance of the bound type from the given credentials.
+	 * @param credentials the credential map of a service
+	 * @return the bound instance
+	 */
+	T bind(Map<String, Object> credentials);
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Locates the generated {@link CfCredentialsBinder} of a type and provides the value
+ * conversions used by generated binders.
+ *
+ * @author agent
+ */
+public final class CfCredentialsBinders {
+
+	private static final ConcurrentMap<Class<?>, CfCredentialsBinder<?>> BINDERS = new ConcurrentHashMap<>();
+
+	private CfCredentialsBinders() {
+	}
+
+	/**
+	 * Bind the given credentials to an instance of the given type.
+	 * @param cfCredentials the credentials
+	 * @param type a type annotated with {@link CfCredentialsBinding}
+	 * @param <T> the bound type
+	 * @return the bound instance
+	 */
+	public static <T> T bind(CfCredentials cfCredentials, Class<T> type) {
+		return getBinder(type).bind(cfCredentials.getMap());
+	}
+
+	/**
+	 * Return the generated binder of the given type. Binders are discovered with
+	 * {@link ServiceLoader} from the class loader of the type and cached.
+	 * @param type a type annotated with {@link CfCredentialsBinding}
+	 * @param <T> the bound type
+	 * @return the binder
+	 * @throws IllegalArgumentException if no binder was generated for the type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CfCredentialsBinder<T> getBinder(Class<T> type) {
+		CfCredentialsBinder<?> binder = BINDERS.get(type);
+		if (binder == null) {
+			for (CfCredentialsBinder<?> candidate : ServiceLoader.load(CfCredentialsBinder.class,
+					type.getClassLoader())) {
+				BINDERS.putIfAbsent(candidate.getType(), candidate);
+			}
+			binder = BINDERS.get(type);
+			if (binder == null) {
+				throw new IllegalArgumentException("No CfCredentialsBinder found for [" + type.getName()
+						+ "], is it annotated with @CfCredentialsBinding and compiled with spring-cfenv-processor?");
+			}
+		}
+		return (CfCredentialsBinder<T>) binder;
+	}
+
+	public static boolean contains(Map<String, Object> credentials, String... keys) {
+		return getValue(credentials, keys) != null;
+	}
+
+	public static Object getValue(Map<String, Object> credentials, String... keys) {
+		if (credentials != null) {
+			for (String key : keys) {
+				Object value = credentials.get(key);
+				if (value != null) {
+					return value;
+				}
+			}
+		}
+		return null;
+	}
+
+	public static String getString(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		return (value != null) ? value.toString() : null;
+	}
+
+	public static char[] getChars(Map<String, Object> credentials, String... keys) {
+		String value = getString(credentials, keys);
+		return (value != null) ? value.toCharArray() : null;
+	}
+
+	public static Integer getInteger(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		if (value == null || value instanceof Integer) {
+			return (Integer) value;
+		}
+		return (value instanceof Number) ? ((Number) value).intValue() : Integer.valueOf(value.toString().trim());
+	}
+
+	public static int getIntValue(Map<String, Object> credentials, String... keys) {
+		Integer value = getInteger(credentials, keys);
+		return (value != null) ? value : 0;
+	}
+
+	public static Long getLong(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		if (value == null || value instanceof Long) {
+			return (Long) value;
+		}
+		return (value instanceof Number) ? ((Number) value).longValue() : Long.valueOf(value.toString().trim());
+	}
+
+	public static long getLongValue(Map<String, Object> credentials, String... keys) {
+		Long value = getLong(credentials, keys);
+		return (value != null) ? value : 0L;
+	}
+
+	public static Double getDouble(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		if (value == null || value instanceof Double) {
+			return (Double) value;
+		}
+		return (value instanceof Number) ? ((Number) value).doubleValue() : Double.valueOf(value.toString().trim());
+	}
+
+	public static double getDoubleValue(Map<String, Object> credentials, String... keys) {
+		Double value = getDouble(credentials, keys);
+		return (value != null) ? value : 0D;
+	}
+
+	public static Boolean getBoolean(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		if (value == null || value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		return Boolean.valueOf(value.toString().trim());
+	}
+
+	public static boolean getBooleanValue(Map<String, Object> credentials, String... keys) {
+		Boolean value = getBoolean(credentials, keys);
+		return (value != null) ? value : false;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static List<Object> getList(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		if (value != null && !(value instanceof List)) {
+			throw new IllegalArgumentException("Credential " + keys[0] + " is not a list");
+		}
+		return (List<Object>) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> getMap(Map<String, Object> credentials, String... keys) {
+		Object value = getValue(credentials, keys);
+		if (value != null && !(value instanceof Map)) {
+			throw new IllegalArgumentException("Credential " + keys[0] + " is not an object");
+		}
+		return (Map<String, Object>) value;
+	}
+
+}
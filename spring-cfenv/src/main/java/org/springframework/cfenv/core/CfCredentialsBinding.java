@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a type that service credentials are bound to with {@link CfCredentials#bind(Class)}.
+ *
+ * <p>The {@code spring-cfenv-processor} annotation processor generates a
+ * {@link CfCredentialsBinder} for each annotated type at compile time, so binding reads
+ * the credential map without reflection. The type is bound through its only constructor
+ * with parameters, for example the canonical constructor of a record, or else through
+ * the setters of a no-argument constructed instance. Each parameter or setter reads the
+ * credential key of the same name, or its snake case form, unless
+ * {@link CfCredentialsKey} is present.
+ *
+ * @author agent
+ * @see CfCredentialsKey
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface CfCredentialsBinding {
+
+}
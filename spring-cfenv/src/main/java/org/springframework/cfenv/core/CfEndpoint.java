@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+/**
+ * Host and optional port of one node of a bound service.
+ *
+ * @author agent
+ */
+public class CfEndpoint {
+
+	private final String host;
+
+	private final int port;
+
+	public CfEndpoint(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Parse an endpoint in the form {@code host}, {@code host:port}, {@code [ipv6]} or
+	 * {@code [ipv6]:port}.
+	 * @param endpoint the endpoint string
+	 * @param defaultPort the port to use if the endpoint does not contain one, -1 if unknown
+	 * @return the parsed endpoint
+	 */
+	public static CfEndpoint parse(String endpoint, int defaultPort) {
+		String value = endpoint.trim();
+		int portSeparator = value.startsWith("[") ? value.indexOf(':', value.indexOf(']')) : value.lastIndexOf(':');
+		if (portSeparator == -1 || (!value.startsWith("[") && value.indexOf(':') != portSeparator)) {
+			// No port, or an IPv6 address without brackets
+			return new CfEndpoint(value, defaultPort);
+		}
+		try {
+			return new CfEndpoint(value.substring(0, portSeparator),
+					Integer.parseInt(value.substring(portSeparator + 1)));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid port in endpoint [" + endpoint + "]", e);
+		}
+	}
+
+	public String getHost() {
+		return this.host;
+	}
+
+	/**
+	 * Return the port of the endpoint.
+	 * @return the port, -1 if not known
+	 */
+	public int getPort() {
+		return this.port;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		CfEndpoint that = (CfEndpoint) o;
+		return this.port == that.port && this.host.equals(that.host);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.host.hashCode() + this.port;
+	}
+
+	@Override
+	public String toString() {
+		return (this.port != -1) ? this.host + ":" + this.port : this.host;
+	}
+
+}
@@ -15,12 +15,23 @@
  */
 package org.springframework.cfenv.core;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
 
 /**
  * Provides access to Cloud Foundry environment variables.
@@ -32,51 +43,232 @@ public class CfEnv {
 
 	public static final String VCAP_SERVICES = "VCAP_SERVICES";
 
-	/* TODO  pick small json parser and package as a shadowed jar*/
-	private ObjectMapper objectMapper = new ObjectMapper();
+	/**
+	 * Documents are read token by token rather than with data binding, so parsing needs
+	 * no reflection and works in native images.
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final VcapSource vcapSource;
 
-	private List<CfService> cfServices = new ArrayList<>();
+	private final List<CfEnvListener> listeners = new CopyOnWriteArrayList<>();
 
-	private CfApplication cfApplication;
+	private volatile Object fingerprint;
 
+	private volatile List<CfService> cfServices;
+
+	private volatile CfApplication cfApplication;
+
+	/**
+	 * Create a new instance reading the {@code VCAP_SERVICES} and
+	 * {@code VCAP_APPLICATION} environment variables or, when {@code VCAP_SERVICES} is not
+	 * set and {@code SERVICE_BINDING_ROOT} is, the service binding directory tree.
+	 * @see ServiceBindingVcapSource#isActive()
+	 */
 	public CfEnv() {
-		try {
-			String vcapServicesJson = System.getenv(VCAP_SERVICES);
-			if (vcapServicesJson != null && vcapServicesJson.length() > 0) {
-				Map<String, List<Map<String, Object>>> rawServices = this.objectMapper.readValue(vcapServicesJson,
-						new TypeReference<Map<String, List<Map<String, Object>>>>() {
-						}
+		this(ServiceBindingVcapSource.isActive() ? new ServiceBindingVcapSource() : new EnvironmentVcapSource());
+	}
 
-				);
-				for (Map.Entry<String, List<Map<String, Object>>> entry : rawServices.entrySet()) {
-					for (Map<String, Object> serviceData : entry.getValue()) {
-						cfServices.add(new CfService(serviceData));
-					}
+	/**
+	 * Create a new instance reading the Cloud Foundry environment from the given source.
+	 * @param vcapSource the source of the {@code VCAP_SERVICES} and
+	 * {@code VCAP_APPLICATION} documents
+	 */
+	public CfEnv(VcapSource vcapSource) {
+		this.vcapSource = vcapSource;
+		this.fingerprint = vcapSource.getFingerprint();
+		this.cfServices = new ServiceList(readServices());
+		this.cfApplication = readApplication();
+	}
+
+	private List<CfService> readServices() {
+		CfEnvConstructionEvent event = null;
+		if (CfEnvFlightRecorder.isAvailable()) {
+			event = new CfEnvConstructionEvent();
+			event.begin();
+		}
+		List<CfService> cfServices = new ArrayList<>();
+		long size = 0;
+		boolean succeeded = false;
+		try {
+			long start = System.nanoTime();
+			JsonParser parser = this.vcapSource.createServicesParser(JSON_FACTORY);
+			if (parser != null) {
+				Map<String, Object> rawServices;
+				try {
+					rawServices = JsonValueReader.readObject(parser);
+					size = getSize(parser.getCurrentLocation());
+				}
+				finally {
+					parser.close();
+				}
+				if (rawServices != null) {
+					addServices(cfServices, rawServices);
+				}
+			}
+			else {
+				for (Map<String, Object> serviceData : this.vcapSource.readServices()) {
+					cfServices.add(new CfService(serviceData));
 				}
 			}
+			CfEnvMetrics.recordParse(size, cfServices.size(), System.nanoTime() - start);
+			succeeded = true;
 		}
 		catch (Exception e) {
-			throw new IllegalStateException("Could not access/parse " + VCAP_SERVICES + " environment variable.", e);
+			throw new IllegalStateException("Could not access/parse " + VCAP_SERVICES + " " + this.vcapSource + ".", e);
 		}
+		finally {
+			if (event != null) {
+				// Also committed on failure, the case most worth looking at in a recording
+				event.payloadSize = size;
+				event.serviceCount = cfServices.size();
+				event.succeeded = succeeded;
+				event.commit();
+			}
+		}
+		return cfServices;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void addServices(List<CfService> cfServices, Map<String, Object> rawServices) {
+		for (Map.Entry<String, Object> entry : rawServices.entrySet()) {
+			if (!(entry.getValue() instanceof List)) {
+				throw new IllegalArgumentException("Expected a list of services under [" + entry.getKey() + "]");
+			}
+			for (Object serviceData : (List<Object>) entry.getValue()) {
+				if (!(serviceData instanceof Map)) {
+					throw new IllegalArgumentException("Expected a service object under [" + entry.getKey() + "]");
+				}
+				cfServices.add(new CfService((Map<String, Object>) serviceData));
+			}
+		}
+	}
+
+	private CfApplication readApplication() {
 		try {
-			String vcapApplicationJson = System.getenv(VCAP_APPLICATION);
-			if (vcapApplicationJson != null && vcapApplicationJson.length() > 0) {
-				Map<String, Object> applicationData = objectMapper.readValue(vcapApplicationJson, Map.class);
-				this.cfApplication = new CfApplication(applicationData);
+			JsonParser parser = this.vcapSource.createApplicationParser(JSON_FACTORY);
+			if (parser != null) {
+				try {
+					Map<String, Object> applicationData = JsonValueReader.readObject(parser);
+					return (applicationData != null) ? new CfApplication(applicationData) : null;
+				}
+				finally {
+					parser.close();
+				}
 			}
 		}
 		catch (Exception e) {
 			// throw new IllegalStateException("Could not access/parse " + VCAP_APPLICATION + "
 			// environment variable.", e);
 		}
+		return null;
+	}
+
+	/**
+	 * Read the services again from the source this instance was created with and notify
+	 * the registered listeners of any change. Services that did not change keep their
+	 * existing {@link CfService} instance. Nothing is read when the source reports the same
+	 * {@link VcapSource#getFingerprint() fingerprint} as on the previous read.
+	 * @return the changes, empty if the services did not change
+	 * @throws IllegalStateException if the services cannot be read
+	 */
+	public synchronized List<CfEnvChange> refresh() {
+		Object fingerprint = this.vcapSource.getFingerprint();
+		if (fingerprint != null && fingerprint.equals(this.fingerprint)) {
+			return Collections.emptyList();
+		}
+		List<CfService> previousServices = this.cfServices;
+		Map<String, CfService> previousByName = new LinkedHashMap<>();
+		for (CfService cfService : previousServices) {
+			previousByName.put(cfService.getName(), cfService);
+		}
+		List<CfEnvChange> changes = new ArrayList<>();
+		List<CfService> cfServices = new ArrayList<>();
+		for (CfService current : readServices()) {
+			CfService previous = previousByName.remove(current.getName());
+			if (previous == null) {
+				changes.add(new CfEnvChange(CfEnvChange.Type.ADDED, null, current));
+				cfServices.add(current);
+			}
+			else if (previous.getMap().equals(current.getMap())) {
+				cfServices.add(previous);
+			}
+			else {
+				addChanges(changes, previous, current);
+				cfServices.add(current);
+			}
+		}
+		for (CfService removed : previousByName.values()) {
+			changes.add(new CfEnvChange(CfEnvChange.Type.REMOVED, removed, null));
+		}
+		this.cfServices = new ServiceList(cfServices);
+		this.cfApplication = readApplication();
+		this.fingerprint = fingerprint;
+		changes = Collections.unmodifiableList(changes);
+		if (!changes.isEmpty()) {
+			for (CfEnvListener listener : this.listeners) {
+				listener.onChange(this, changes);
+			}
+		}
+		return changes;
+	}
+
+	private void addChanges(List<CfEnvChange> changes, CfService previous, CfService current) {
+		boolean credentialsChanged = !Objects.equals(previous.getCredentials().getMap(),
+				current.getCredentials().getMap());
+		boolean planChanged = !Objects.equals(previous.getPlan(), current.getPlan());
+		if (credentialsChanged) {
+			changes.add(new CfEnvChange(CfEnvChange.Type.CREDENTIALS_CHANGED, previous, current));
+		}
+		if (planChanged) {
+			changes.add(new CfEnvChange(CfEnvChange.Type.PLAN_CHANGED, previous, current));
+		}
+		if (!credentialsChanged && !planChanged) {
+			changes.add(new CfEnvChange(CfEnvChange.Type.UPDATED, previous, current));
+		}
+	}
+
+	/**
+	 * Register a listener notified of the changes found by {@link #refresh()}.
+	 * @param listener the listener
+	 */
+	public void addListener(CfEnvListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeListener(CfEnvListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Size of a parsed document in bytes. The built-in sources all hand out byte based
+	 * parsers; for a custom source with a character based parser the number of characters
+	 * is used instead.
+	 */
+	private static long getSize(JsonLocation location) {
+		long size = location.getByteOffset();
+		return (size >= 0) ? size : location.getCharOffset();
 	}
 
 	public CfApplication getApp() {
 		return this.cfApplication;
 	}
 
+	/**
+	 * Return all bound services.
+	 * @return an unmodifiable list of the services
+	 */
 	public List<CfService> findAllServices() {
-		return cfServices;
+		return this.cfServices;
+	}
+
+	/**
+	 * Return a stream of all bound services. The stream is ordered, sized and immutable
+	 * and splits evenly, so it can be run in parallel over large numbers of services.
+	 * @return a stream of the services
+	 */
+	public Stream<CfService> streamServices() {
+		return StreamSupport.stream(this.cfServices.spliterator(), false);
 	}
 
 	public List<CfService> findServicesByName(String... spec) {
@@ -97,7 +289,9 @@ public class CfEnv {
 	}
 
 	public CfService findServiceByName(String... spec) {
+		long start = System.nanoTime();
 		List<CfService> cfServices = findServicesByName(spec);
+		CfEnvMetrics.recordLookup(CfEnvMetrics.Lookup.NAME, cfServices.size(), System.nanoTime() - start);
 		if (cfServices.size() == 1) {
 			return cfServices.stream().findFirst().get();
 		}
@@ -115,6 +309,7 @@ public class CfEnv {
 	}
 
 	public CfService findServiceByLabel(String... spec) {
+		long start = System.nanoTime();
 		List<CfService> cfServices = new ArrayList<>();
 		for (CfService cfService : this.cfServices) {
 			if (spec != null) {
@@ -128,6 +323,7 @@ public class CfEnv {
 				}
 			}
 		}
+		CfEnvMetrics.recordLookup(CfEnvMetrics.Lookup.LABEL, cfServices.size(), System.nanoTime() - start);
 		if (cfServices.size() == 1) {
 			return cfServices.stream().findFirst().get();
 		}
@@ -137,6 +333,7 @@ public class CfEnv {
 	}
 
 	public CfService findServiceByTag(String... spec) {
+		long start = System.nanoTime();
 		List<CfService> cfServices = new ArrayList<>();
 		for (CfService cfService : this.cfServices) {
 			if (spec != null) {
@@ -152,6 +349,7 @@ public class CfEnv {
 				}
 			}
 		}
+		CfEnvMetrics.recordLookup(CfEnvMetrics.Lookup.TAG, cfServices.size(), System.nanoTime() - start);
 		if (cfServices.size() == 1) {
 			return cfServices.stream().findFirst().get();
 		}
@@ -185,4 +383,32 @@ public class CfEnv {
 		return System.getenv(VCAP_APPLICATION) != null;
 	}
 
+	/**
+	 * Immutable list of services backed by an array.
+	 */
+	private static final class ServiceList extends AbstractList<CfService> implements RandomAccess {
+
+		private final CfService[] services;
+
+		ServiceList(List<CfService> services) {
+			this.services = services.toArray(new CfService[0]);
+		}
+
+		@Override
+		public CfService get(int index) {
+			return this.services[index];
+		}
+
+		@Override
+		public int size() {
+			return this.services.length;
+		}
+
+		@Override
+		public Spliterator<CfService> spliterator() {
+			return Arrays.spliterator(this.services);
+		}
+
+	}
+
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+/**
+ * A change to a bound service found by {@link CfEnv#refresh()}. Services are matched by
+ * name.
+ *
+ * @author agent
+ */
+public final class CfEnvChange {
+
+	/**
+	 * Kind of change.
+	 */
+	public enum Type {
+
+		/**
+		 * The service was bound.
+		 */
+		ADDED,
+
+		/**
+		 * The service was unbound.
+		 */
+		REMOVED,
+
+		/**
+		 * The credentials of the service changed, for example after a credential rotation.
+		 */
+		CREDENTIALS_CHANGED,
+
+		/**
+		 * The plan of the service changed.
+		 */
+		PLAN_CHANGED,
+
+		/**
+		 * Other fields of the service, such as its tags, changed.
+		 */
+		UPDATED
+
+	}
+
+	private final Type type;
+
+	private final CfService previous;
+
+	private final CfService current;
+
+	CfEnvChange(Type type, CfService previous, CfService current) {
+		this.type = type;
+		this.previous = previous;
+		this.current = current;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	public String getServiceName() {
+		return (this.current != null) ? this.current.getName() : this.previous.getName();
+	}
+
+	/**
+	 * Return the service before the change.
+	 * @return the previous service, {@code null} for {@link Type#ADDED} changes
+	 */
+	public CfService getPrevious() {
+		return this.previous;
+	}
+
+	/**
+	 * Return the service after the change.
+	 * @return the current service, {@code null} for {@link Type#REMOVED} changes
+	 */
+	public CfService getCurrent() {
+		return this.current;
+	}
+
+	@Override
+	public String toString() {
+		return this.type + " [" + getServiceName() + "]";
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event emitted when a {@link CfEnv} reads its services, on creation and
+ * on each {@link CfEnv#refresh() refresh}.
+ *
+ * @author agent
+ */
+@Name("org.springframework.cfenv.CfEnvConstruction")
+@Label("CfEnv Construction")
+@Category("Spring CF Env")
+@Description("Parsing of VCAP_SERVICES when a CfEnv is created or refreshed")
+@StackTrace(false)
+public class CfEnvConstructionEvent extends Event {
+
+	@Label("Payload Size")
+	@Description("Size of the VCAP_SERVICES payload")
+	@DataAmount
+	public long payloadSize;
+
+	@Label("Service Count")
+	public int serviceCount;
+
+	@Label("Succeeded")
+	@Description("Whether the operation completed without an exception")
+	public boolean succeeded;
+
+}
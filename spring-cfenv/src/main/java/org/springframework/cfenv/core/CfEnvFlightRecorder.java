@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+/**
+ * Tells whether Java Flight Recorder events can be emitted. Event classes extend
+ * {@code jdk.jfr.Event}, which older Java 8 runtimes do not provide, so they must only
+ * be referenced when {@link #isAvailable()} returns {@code true}.
+ *
+ * @author agent
+ */
+public final class CfEnvFlightRecorder {
+
+	private static final boolean AVAILABLE = isPresent("jdk.jfr.Event");
+
+	private CfEnvFlightRecorder() {
+	}
+
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	private static boolean isPresent(String className) {
+		try {
+			Class.forName(className, false, CfEnvFlightRecorder.class.getClassLoader());
+			return true;
+		}
+		catch (Throwable ex) {
+			return false;
+		}
+	}
+
+}
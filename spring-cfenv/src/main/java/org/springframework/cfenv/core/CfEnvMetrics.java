@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide statistics about parsing the Cloud Foundry environment and looking up
+ * services. Statistics are kept in plain counters so that recording is cheap whether or
+ * not a metrics library reads them; the Spring Boot module exposes them through
+ * Micrometer when it is present.
+ *
+ * @author agent
+ */
+public final class CfEnvMetrics {
+
+	/**
+	 * The kind of service lookup.
+	 */
+	public enum Lookup {
+
+		NAME("findServiceByName"), LABEL("findServiceByLabel"), TAG("findServiceByTag");
+
+		private final String method;
+
+		Lookup(String method) {
+			this.method = method;
+		}
+
+		public String getMethod() {
+			return this.method;
+		}
+
+	}
+
+	/**
+	 * The result of a service lookup.
+	 */
+	public enum Outcome {
+
+		HIT, MISS, AMBIGUOUS;
+
+		static Outcome of(int matches) {
+			return (matches == 1) ? HIT : (matches == 0) ? MISS : AMBIGUOUS;
+		}
+
+	}
+
+	private static final Timing PARSE = new Timing();
+
+	private static final Timing JDBC_RESOLUTION = new Timing();
+
+	private static final Timing[][] LOOKUPS = new Timing[Lookup.values().length][Outcome.values().length];
+
+	private static volatile long vcapServicesSize;
+
+	private static volatile int serviceCount;
+
+	static {
+		for (Timing[] outcomes : LOOKUPS) {
+			for (int i = 0; i < outcomes.length; i++) {
+				outcomes[i] = new Timing();
+			}
+		}
+	}
+
+	private CfEnvMetrics() {
+	}
+
+	/**
+	 * Record parsing of {@code VCAP_SERVICES}.
+	 * @param size size of the payload in bytes
+	 * @param services the number of services found
+	 * @param nanos the time taken in nanoseconds
+	 */
+	public static void recordParse(long size, int services, long nanos) {
+		vcapServicesSize = size;
+		serviceCount = services;
+		PARSE.record(nanos);
+	}
+
+	/**
+	 * Record the creation of JDBC services from a list of services.
+	 * @param nanos the time taken in nanoseconds
+	 */
+	public static void recordJdbcResolution(long nanos) {
+		JDBC_RESOLUTION.record(nanos);
+	}
+
+	/**
+	 * Record a service lookup.
+	 * @param lookup the kind of lookup
+	 * @param matches the number of services that matched
+	 * @param nanos the time taken in nanoseconds
+	 */
+	public static void recordLookup(Lookup lookup, int matches, long nanos) {
+		LOOKUPS[lookup.ordinal()][Outcome.of(matches).ordinal()].record(nanos);
+	}
+
+	/**
+	 * Return the size of the most recently parsed {@code VCAP_SERVICES} payload in bytes.
+	 */
+	public static long getVcapServicesSize() {
+		return vcapServicesSize;
+	}
+
+	/**
+	 * Return the number of services in the most recently parsed {@code VCAP_SERVICES}
+	 * payload.
+	 */
+	public static int getServiceCount() {
+		return serviceCount;
+	}
+
+	public static Timing getParseTiming() {
+		return PARSE;
+	}
+
+	public static Timing getJdbcResolutionTiming() {
+		return JDBC_RESOLUTION;
+	}
+
+	public static Timing getLookupTiming(Lookup lookup, Outcome outcome) {
+		return LOOKUPS[lookup.ordinal()][outcome.ordinal()];
+	}
+
+	/**
+	 * Count and total time of a recorded operation.
+	 */
+	public static final class Timing {
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		void record(long nanos) {
+			this.count.increment();
+			this.totalNanos.add(nanos);
+		}
+
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		public double getTotalNanos() {
+			return this.totalNanos.sum();
+		}
+
+	}
+
+}
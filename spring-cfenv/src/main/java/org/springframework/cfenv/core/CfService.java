@@ -41,6 +41,17 @@ public class CfService {
 		this.cfCredentials = createCredentials();
 	}
 
+	/**
+	 * Create a service with the data of the given service, reusing its parsed credentials
+	 * rather than reading them again. Derived credentials added to the new service are not
+	 * visible in the given one.
+	 * @param cfService the service to copy
+	 */
+	protected CfService(CfService cfService) {
+		this.serviceData = cfService.serviceData;
+		this.cfCredentials = new CfCredentials(cfService.getCredentials());
+	}
+
 	public CfCredentials createCredentials() {
 		Map<String, Object> credentials = new HashMap<>();
 		if (this.serviceData.containsKey(CREDENTIALS)) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.net.URL;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * {@link VcapSource} reading the {@code VCAP_SERVICES} and {@code VCAP_APPLICATION}
+ * documents from class path resources.
+ *
+ * @author agent
+ */
+public class ClasspathVcapSource implements VcapSource {
+
+	private final String servicesResource;
+
+	private final String applicationResource;
+
+	private final ClassLoader classLoader;
+
+	public ClasspathVcapSource(String servicesResource) {
+		this(servicesResource, null);
+	}
+
+	public ClasspathVcapSource(String servicesResource, String applicationResource) {
+		this(servicesResource, applicationResource, ClasspathVcapSource.class.getClassLoader());
+	}
+
+	/**
+	 * Create a new source.
+	 * @param servicesResource the name of the {@code VCAP_SERVICES} resource
+	 * @param applicationResource the name of the {@code VCAP_APPLICATION} resource, may be
+	 * {@code null}
+	 * @param classLoader the class loader to load the resources with
+	 */
+	public ClasspathVcapSource(String servicesResource, String applicationResource, ClassLoader classLoader) {
+		this.servicesResource = servicesResource;
+		this.applicationResource = applicationResource;
+		this.classLoader = classLoader;
+	}
+
+	@Override
+	public JsonParser createServicesParser(JsonFactory jsonFactory) throws IOException {
+		return createParser(jsonFactory, this.servicesResource);
+	}
+
+	@Override
+	public JsonParser createApplicationParser(JsonFactory jsonFactory) throws IOException {
+		return createParser(jsonFactory, this.applicationResource);
+	}
+
+	private JsonParser createParser(JsonFactory jsonFactory, String resource) throws IOException {
+		if (resource == null) {
+			return null;
+		}
+		URL url = this.classLoader.getResource(resource);
+		if (url == null) {
+			throw new IOException("Class path resource [" + resource + "] does not exist");
+		}
+		return jsonFactory.createParser(url);
+	}
+
+	@Override
+	public String toString() {
+		return "class path resource [" + this.servicesResource + "]";
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * {@link VcapSource} reading the {@code VCAP_SERVICES} and {@code VCAP_APPLICATION}
+ * environment variables set by Cloud Foundry.
+ *
+ * @author agent
+ */
+public class EnvironmentVcapSource implements VcapSource {
+
+	@Override
+	public JsonParser createServicesParser(JsonFactory jsonFactory) throws IOException {
+		return createParser(jsonFactory, System.getenv(CfEnv.VCAP_SERVICES));
+	}
+
+	@Override
+	public JsonParser createApplicationParser(JsonFactory jsonFactory) throws IOException {
+		return createParser(jsonFactory, System.getenv(CfEnv.VCAP_APPLICATION));
+	}
+
+	@Override
+	public Object getFingerprint() {
+		return Arrays.asList(System.getenv(CfEnv.VCAP_SERVICES), System.getenv(CfEnv.VCAP_APPLICATION));
+	}
+
+	/**
+	 * Parse the UTF-8 encoding of the document, so that the parser reports the size of the
+	 * document in bytes.
+	 */
+	private JsonParser createParser(JsonFactory jsonFactory, String json) throws IOException {
+		return (json != null && json.length() > 0) ? jsonFactory.createParser(json.getBytes(StandardCharsets.UTF_8))
+				: null;
+	}
+
+	@Override
+	public String toString() {
+		return "environment variable";
+	}
+
+}
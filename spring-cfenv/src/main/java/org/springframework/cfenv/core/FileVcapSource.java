@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * {@link VcapSource} reading the {@code VCAP_SERVICES} and {@code VCAP_APPLICATION}
+ * documents from files.
+ *
+ * <p>Files are memory mapped and parsed directly from the mapped buffer, so multi
+ * megabyte binding files are never copied into a {@link String}.
+ *
+ * @author agent
+ */
+public class FileVcapSource implements VcapSource {
+
+	private final Path servicesFile;
+
+	private final Path applicationFile;
+
+	public FileVcapSource(Path servicesFile) {
+		this(servicesFile, null);
+	}
+
+	/**
+	 * Create a new source.
+	 * @param servicesFile the {@code VCAP_SERVICES} file
+	 * @param applicationFile the {@code VCAP_APPLICATION} file, may be {@code null}
+	 */
+	public FileVcapSource(Path servicesFile, Path applicationFile) {
+		this.servicesFile = servicesFile;
+		this.applicationFile = applicationFile;
+	}
+
+	@Override
+	public JsonParser createServicesParser(JsonFactory jsonFactory) throws IOException {
+		return createParser(jsonFactory, this.servicesFile);
+	}
+
+	@Override
+	public JsonParser createApplicationParser(JsonFactory jsonFactory) throws IOException {
+		return createParser(jsonFactory, this.applicationFile);
+	}
+
+	/**
+	 * Return the modification time and size of the files.
+	 */
+	@Override
+	public Object getFingerprint() {
+		List<Object> fingerprint = new ArrayList<>();
+		try {
+			for (Path file : new Path[] { this.servicesFile, this.applicationFile }) {
+				if (file != null && Files.exists(file)) {
+					BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+					fingerprint.add(attributes.lastModifiedTime());
+					fingerprint.add(attributes.size());
+				}
+				else {
+					fingerprint.add(null);
+				}
+			}
+		}
+		catch (IOException ex) {
+			return null;
+		}
+		return fingerprint;
+	}
+
+	private JsonParser createParser(JsonFactory jsonFactory, Path file) throws IOException {
+		if (file == null) {
+			return null;
+		}
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() == 0) {
+				return null;
+			}
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return jsonFactory.createParser(new ByteBufferInputStream(buffer));
+	}
+
+	@Override
+	public String toString() {
+		return "file [" + this.servicesFile + "]";
+	}
+
+	/**
+	 * {@link InputStream} reading the remaining bytes of a buffer.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? (this.buffer.get() & 0xff) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			int count = Math.min(length, this.buffer.remaining());
+			if (count == 0 && length > 0) {
+				count = -1;
+			}
+			else {
+				this.buffer.get(bytes, offset, count);
+			}
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+
+	}
+
+}
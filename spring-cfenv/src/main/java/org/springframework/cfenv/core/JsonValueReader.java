@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads JSON documents into {@link Map}, {@link List} and scalar values by walking the
+ * tokens of a {@link JsonParser}. Unlike data binding this uses no reflection, so it
+ * works unchanged in native images. Values are typed as Jackson's untyped data binding
+ * would type them.
+ *
+ * @author agent
+ */
+final class JsonValueReader {
+
+	private JsonValueReader() {
+	}
+
+	/**
+	 * Read a JSON object from the parser.
+	 * @param parser a parser positioned before or on the start of the object
+	 * @return the object, {@code null} for an empty document or a {@code null} value
+	 * @throws IOException if the document cannot be read or is not an object
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> readObject(JsonParser parser) throws IOException {
+		JsonToken token = (parser.currentToken() != null) ? parser.currentToken() : parser.nextToken();
+		if (token == null || token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (token != JsonToken.START_OBJECT) {
+			throw new JsonParseException(parser, "Expected a JSON object but found " + token);
+		}
+		return (Map<String, Object>) readValue(parser);
+	}
+
+	private static Object readValue(JsonParser parser) throws IOException {
+		switch (parser.currentToken()) {
+			case START_OBJECT:
+				Map<String, Object> object = new LinkedHashMap<>();
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String name = parser.getCurrentName();
+					parser.nextToken();
+					object.put(name, readValue(parser));
+				}
+				return object;
+			case START_ARRAY:
+				List<Object> array = new ArrayList<>();
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					array.add(readValue(parser));
+				}
+				return array;
+			case VALUE_STRING:
+				return parser.getText();
+			case VALUE_NUMBER_INT:
+				return parser.getNumberValue();
+			case VALUE_NUMBER_FLOAT:
+				return parser.getDoubleValue();
+			case VALUE_TRUE:
+				return Boolean.TRUE;
+			case VALUE_FALSE:
+				return Boolean.FALSE;
+			case VALUE_NULL:
+				return null;
+			case VALUE_EMBEDDED_OBJECT:
+				return parser.getEmbeddedObject();
+			default:
+				throw new JsonParseException(parser, "Unexpected token " + parser.currentToken());
+		}
+	}
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * {@link VcapSource} reading services from a Kubernetes Service Binding directory tree,
+ * as found under {@code $SERVICE_BINDING_ROOT}.
+ *
+ * <p>Each directory under the root is a service named after the directory. Its
+ * {@code type} file is used as the label and, together with the {@code provider} file,
+ * as tags. All other files are credentials keyed by file name. Credential files are only
+ * read when their key is accessed. A {@code database} entry is also exposed as
+ * {@code name}, the key used for the database name in Cloud Foundry credentials.
+ *
+ * <p>Binding directories are scanned in parallel. {@link CfEnv#CfEnv()} uses this source
+ * when {@code SERVICE_BINDING_ROOT} is set and {@code VCAP_SERVICES} is not.
+ *
+ * @author agent
+ */
+public class ServiceBindingVcapSource implements VcapSource {
+
+	public static final String SERVICE_BINDING_ROOT = "SERVICE_BINDING_ROOT";
+
+	private static final String TYPE = "type";
+
+	private static final String PROVIDER = "provider";
+
+	private static final String DATABASE = "database";
+
+	private final Path root;
+
+	/**
+	 * Create a new source for the directory named by the {@code SERVICE_BINDING_ROOT}
+	 * environment variable.
+	 */
+	public ServiceBindingVcapSource() {
+		this(getServiceBindingRoot());
+	}
+
+	public ServiceBindingVcapSource(Path root) {
+		this.root = root;
+	}
+
+	/**
+	 * Return whether the application runs with a service binding root rather than in Cloud
+	 * Foundry, that is whether {@code SERVICE_BINDING_ROOT} is set and
+	 * {@code VCAP_SERVICES} is not.
+	 * @return whether services should be read from the service binding root
+	 */
+	public static boolean isActive() {
+		String vcapServices = System.getenv(CfEnv.VCAP_SERVICES);
+		return getServiceBindingRoot() != null && (vcapServices == null || vcapServices.length() == 0);
+	}
+
+	private static Path getServiceBindingRoot() {
+		String root = System.getenv(SERVICE_BINDING_ROOT);
+		return (root != null && root.length() > 0) ? Paths.get(root) : null;
+	}
+
+	@Override
+	public JsonParser createServicesParser(JsonFactory jsonFactory) {
+		return null;
+	}
+
+	@Override
+	public JsonParser createApplicationParser(JsonFactory jsonFactory) {
+		return null;
+	}
+
+	@Override
+	public List<Map<String, Object>> readServices() throws IOException {
+		if (this.root == null || !Files.isDirectory(this.root)) {
+			return Collections.emptyList();
+		}
+		try {
+			return listVisible(this.root).parallelStream().filter(Files::isDirectory)
+					.map(ServiceBindingVcapSource::readBinding).filter((serviceData) -> serviceData != null).collect(Collectors.toList());
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Return the paths, modification times and sizes of the binding files. Files are not
+	 * read.
+	 */
+	@Override
+	public Object getFingerprint() {
+		List<Object> fingerprint = new ArrayList<>();
+		if (this.root == null || !Files.isDirectory(this.root)) {
+			return fingerprint;
+		}
+		try {
+			for (Path binding : listVisible(this.root)) {
+				fingerprint.add(binding.getFileName().toString());
+				if (Files.isDirectory(binding)) {
+					for (Path file : listVisible(binding)) {
+						BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+						fingerprint.add(file.getFileName().toString());
+						fingerprint.add(attributes.lastModifiedTime());
+						fingerprint.add(attributes.size());
+					}
+				}
+			}
+		}
+		catch (IOException ex) {
+			return null;
+		}
+		return fingerprint;
+	}
+
+	private static Map<String, Object> readBinding(Path binding) {
+		Set<String> keys = new LinkedHashSet<>();
+		try {
+			for (Path path : listVisible(binding)) {
+				if (Files.isRegularFile(path)) {
+					keys.add(path.getFileName().toString());
+				}
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		if (!keys.contains(TYPE)) {
+			return null;
+		}
+		BindingCredentials credentials = new BindingCredentials(binding, keys);
+		String type = (String) credentials.get(TYPE);
+		List<String> tags = new ArrayList<>();
+		tags.add(type);
+		Map<String, Object> serviceData = new LinkedHashMap<>();
+		serviceData.put("name", binding.getFileName().toString());
+		serviceData.put("label", type);
+		if (keys.contains(PROVIDER)) {
+			String provider = (String) credentials.get(PROVIDER);
+			serviceData.put("provider", provider);
+			tags.add(provider);
+		}
+		serviceData.put("tags", tags);
+		serviceData.put("credentials", credentials);
+		return serviceData;
+	}
+
+	private static List<Path> listVisible(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.filter(ServiceBindingVcapSource::isVisible).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Skip hidden entries such as the {@code ..data} links Kubernetes uses to update
+	 * mounted secrets atomically.
+	 */
+	private static boolean isVisible(Path path) {
+		return !path.getFileName().toString().startsWith(".");
+	}
+
+	@Override
+	public String toString() {
+		return "service binding root [" + this.root + "]";
+	}
+
+	/**
+	 * Credentials of a binding, read from their files on first access.
+	 */
+	private static final class BindingCredentials extends AbstractMap<String, Object> {
+
+		private final Path binding;
+
+		private final Map<String, String> fileNames = new LinkedHashMap<>();
+
+		private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+		BindingCredentials(Path binding, Set<String> fileNames) {
+			this.binding = binding;
+			for (String fileName : fileNames) {
+				this.fileNames.put(fileName, fileName);
+			}
+			if (fileNames.contains(DATABASE) && !fileNames.contains("name")) {
+				this.fileNames.put("name", DATABASE);
+			}
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return this.fileNames.containsKey(key);
+		}
+
+		@Override
+		public Object get(Object key) {
+			String fileName = this.fileNames.get(key);
+			return (fileName != null) ? this.values.computeIfAbsent(fileName, this::read) : null;
+		}
+
+		private String read(String fileName) {
+			try {
+				String value = new String(Files.readAllBytes(this.binding.resolve(fileName)), StandardCharsets.UTF_8);
+				// Secrets created from files often keep the trailing line break
+				int end = value.length();
+				while (end > 0 && (value.charAt(end - 1) == '\n' || value.charAt(end - 1) == '\r')) {
+					end--;
+				}
+				return value.substring(0, end);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		/**
+		 * Entries read their value when {@link Entry#getValue()} is called, so iterating over
+		 * the keys reads no files.
+		 */
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					Iterator<String> keys = BindingCredentials.this.fileNames.keySet().iterator();
+					return new Iterator<Entry<String, Object>>() {
+
+						@Override
+						public boolean hasNext() {
+							return keys.hasNext();
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							return new BindingEntry(keys.next());
+						}
+
+					};
+				}
+
+				@Override
+				public int size() {
+					return BindingCredentials.this.fileNames.size();
+				}
+
+			};
+		}
+
+		private final class BindingEntry implements Entry<String, Object> {
+
+			private final String key;
+
+			BindingEntry(String key) {
+				this.key = key;
+			}
+
+			@Override
+			public String getKey() {
+				return this.key;
+			}
+
+			@Override
+			public Object getValue() {
+				return get(this.key);
+			}
+
+			@Override
+			public Object setValue(Object value) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public boolean equals(Object other) {
+				if (!(other instanceof Entry)) {
+					return false;
+				}
+				Entry<?, ?> entry = (Entry<?, ?>) other;
+				return this.key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+			}
+
+			@Override
+			public int hashCode() {
+				return this.key.hashCode() ^ Objects.hashCode(getValue());
+			}
+
+			@Override
+			public String toString() {
+				return this.key + "=" + getValue();
+			}
+
+		}
+
+	}
+
+}
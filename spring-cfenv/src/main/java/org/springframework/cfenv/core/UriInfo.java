@@ -203,6 +203,11 @@ public class UriInfo {
 
 	private String[] parseUserinfo(URI uri) {
 		String userInfo = uri.getRawUserInfo();
+		String authority = uri.getRawAuthority();
+		if (userInfo == null && uri.getHost() == null && authority != null && authority.contains("@")) {
+			// Authority listing several hosts, which URI does not parse into user info
+			userInfo = authority.substring(0, authority.lastIndexOf('@'));
+		}
 
 		if (userInfo != null) {
 			String[] userPass = userInfo.split(":");
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Source of the {@code VCAP_SERVICES} and {@code VCAP_APPLICATION} JSON documents read
+ * by {@link CfEnv}.
+ *
+ * <p>Implementations hand out a {@link JsonParser} over the document rather than its
+ * text, so that large payloads can be parsed from their underlying storage without first
+ * being copied into a {@link String}.
+ *
+ * @author agent
+ * @see EnvironmentVcapSource
+ * @see FileVcapSource
+ * @see ClasspathVcapSource
+ * @see InMemoryVcapSource
+ * @see ServiceBindingVcapSource
+ */
+public interface VcapSource {
+
+	/**
+	 * Create a parser over the {@code VCAP_SERVICES} document.
+	 * @param jsonFactory the factory to create the parser with
+	 * @return the parser, or {@code null} if the source has no services document
+	 * @throws IOException if the document cannot be read
+	 */
+	JsonParser createServicesParser(JsonFactory jsonFactory) throws IOException;
+
+	/**
+	 * Create a parser over the {@code VCAP_APPLICATION} document.
+	 * @param jsonFactory the factory to create the parser with
+	 * @return the parser, or {@code null} if the source has no application document
+	 * @throws IOException if the document cannot be read
+	 */
+	JsonParser createApplicationParser(JsonFactory jsonFactory) throws IOException;
+
+	/**
+	 * Read the data of each service from a source that is not a JSON document. Only called
+	 * when {@link #createServicesParser(JsonFactory)} returns {@code null}.
+	 * @return the data of each service, in the format of a {@code VCAP_SERVICES} entry
+	 * @throws IOException if the services cannot be read
+	 */
+	default List<Map<String, Object>> readServices() throws IOException {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Return a cheap to compute value that changes whenever the documents change, such as
+	 * file modification times. {@link CfEnv#refresh()} skips reading the source when the
+	 * fingerprint is equal to the one seen on the previous read.
+	 * @return the fingerprint, or {@code null} if changes cannot be detected, in which case
+	 * the source is always read
+	 */
+	default Object getFingerprint() {
+		return null;
+	}
+
+}
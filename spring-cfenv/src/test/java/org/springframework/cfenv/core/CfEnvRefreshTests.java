@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+public class CfEnvRefreshTests {
+
+	private static final String SERVICES = "{\"p-mysql\":[" +
+			"{\"name\":\"db\",\"plan\":\"small\",\"credentials\":{\"password\":\"secret\"}}," +
+			"{\"name\":\"cache\",\"plan\":\"shared\",\"credentials\":{\"password\":\"cache-secret\"}}," +
+			"{\"name\":\"queue\",\"plan\":\"shared\",\"credentials\":{}}]}";
+
+	private static final String CHANGED_SERVICES = "{\"p-mysql\":[" +
+			"{\"name\":\"db\",\"plan\":\"large\",\"credentials\":{\"password\":\"rotated\"}}," +
+			"{\"name\":\"cache\",\"plan\":\"shared\",\"credentials\":{\"password\":\"cache-secret\"}}," +
+			"{\"name\":\"search\",\"plan\":\"shared\",\"credentials\":{}}]}";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testRefreshWithoutChanges() throws Exception {
+		Path file = write(SERVICES, 1000);
+		CfEnv cfEnv = new CfEnv(new FileVcapSource(file));
+		List<CfService> services = cfEnv.findAllServices();
+
+		assertThat(cfEnv.refresh()).isEmpty();
+		assertThat(cfEnv.findAllServices()).isSameAs(services);
+	}
+
+	@Test
+	public void testRefreshWithChanges() throws Exception {
+		Path file = write(SERVICES, 1000);
+		CfEnv cfEnv = new CfEnv(new FileVcapSource(file));
+		CfService cache = cfEnv.findServiceByName("cache");
+		List<List<CfEnvChange>> notifications = new ArrayList<>();
+		cfEnv.addListener((env, changes) -> notifications.add(changes));
+
+		write(CHANGED_SERVICES, 2000);
+		List<CfEnvChange> changes = cfEnv.refresh();
+
+		assertThat(changes).extracting(CfEnvChange::toString).containsExactly("CREDENTIALS_CHANGED [db]",
+				"PLAN_CHANGED [db]", "ADDED [search]", "REMOVED [queue]");
+		assertThat(notifications).containsExactly(changes);
+		assertThat(cfEnv.findCredentialsByName("db").getPassword()).isEqualTo("rotated");
+		assertThat(cfEnv.findServiceByName("cache")).isSameAs(cache);
+		assertThat(cfEnv.findAllServices()).extracting(CfService::getName).containsExactly("db", "cache", "search");
+	}
+
+	@Test
+	public void testRefreshWithUnchangedContent() throws Exception {
+		Path file = write(SERVICES, 1000);
+		CfEnv cfEnv = new CfEnv(new FileVcapSource(file));
+		List<CfService> services = cfEnv.findAllServices();
+
+		write(SERVICES, 2000);
+		assertThat(cfEnv.refresh()).isEmpty();
+		assertThat(cfEnv.findAllServices()).containsExactlyElementsOf(services);
+	}
+
+	private Path write(String content, long lastModified) throws IOException {
+		Path file = this.temporaryFolder.getRoot().toPath().resolve("vcap-services.json");
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+		return file;
+	}
+
+}
@@ -20,6 +20,8 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import mockit.Mock;
 import mockit.MockUp;
@@ -360,6 +362,21 @@ public class CfEnvTests {
 
 	}
 
+	@Test
+	public void testStreamServices() {
+		mockVcapEnvVars("vcap-services-multiple-mysql.json", "vcap-application.json");
+		CfEnv cfEnv = new CfEnv();
+
+		Spliterator<CfService> spliterator = cfEnv.streamServices().spliterator();
+		assertThat(spliterator.hasCharacteristics(Spliterator.IMMUTABLE | Spliterator.ORDERED | Spliterator.SIZED))
+				.isTrue();
+		assertThat(spliterator.getExactSizeIfKnown()).isEqualTo(3);
+		assertThat(cfEnv.streamServices().parallel().map(CfService::getName))
+				.containsExactlyElementsOf(cfEnv.findAllServices().stream().map(CfService::getName)
+						.collect(Collectors.toList()));
+		assertThatThrownBy(() -> cfEnv.findAllServices().clear()).isInstanceOf(UnsupportedOperationException.class);
+	}
+
 	private void mockVcapEnvVars(String vcapServicesFilename, String vcapApplicationFilename) {
 		String vcapServicesJson;
 		try {
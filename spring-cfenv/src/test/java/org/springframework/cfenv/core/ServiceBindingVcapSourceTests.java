@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+public class ServiceBindingVcapSourceTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testBindings() throws Exception {
+		File db = this.temporaryFolder.newFolder("orders-db");
+		write(db, "type", "mysql\n");
+		write(db, "provider", "bitnami");
+		write(db, "host", "10.0.0.1");
+		write(db, "port", "3306");
+		write(db, "username", "orders_user");
+		write(db, "password", "orders_password");
+		write(db, "database", "orders");
+		File cache = this.temporaryFolder.newFolder("cache");
+		write(cache, "type", "redis");
+		write(cache, "host", "10.0.0.2");
+		// Not bindings
+		this.temporaryFolder.newFolder("..data");
+		write(this.temporaryFolder.newFolder("untyped"), "host", "10.0.0.3");
+
+		CfEnv cfEnv = new CfEnv(new ServiceBindingVcapSource(this.temporaryFolder.getRoot().toPath()));
+
+		assertThat(cfEnv.findAllServices()).extracting(CfService::getName).containsExactly("cache", "orders-db");
+		CfService cfService = cfEnv.findServiceByLabel("mysql");
+		assertThat(cfService.getName()).isEqualTo("orders-db");
+		assertThat(cfService.getTags()).containsExactly("mysql", "bitnami");
+		CfCredentials cfCredentials = cfService.getCredentials();
+		assertThat(cfCredentials.getHost()).isEqualTo("10.0.0.1");
+		assertThat(cfCredentials.getPort()).isEqualTo("3306");
+		assertThat(cfCredentials.getUsername()).isEqualTo("orders_user");
+		assertThat(cfCredentials.getPassword()).isEqualTo("orders_password");
+		assertThat(cfCredentials.getName()).isEqualTo("orders");
+		assertThat(cfEnv.findServiceByTag("redis").getCredentials().getHost()).isEqualTo("10.0.0.2");
+	}
+
+	@Test
+	public void testCredentialsAreReadOnAccess() throws Exception {
+		File db = this.temporaryFolder.newFolder("db");
+		write(db, "type", "postgresql");
+		write(db, "password", "old");
+
+		CfEnv cfEnv = new CfEnv(new ServiceBindingVcapSource(this.temporaryFolder.getRoot().toPath()));
+		write(db, "password", "rotated");
+
+		assertThat(cfEnv.findServiceByName("db").getCredentials().getPassword()).isEqualTo("rotated");
+	}
+
+	@Test
+	public void testIteratingKeysReadsNoFiles() throws Exception {
+		File db = this.temporaryFolder.newFolder("db");
+		write(db, "type", "postgresql");
+		write(db, "password", "secret");
+
+		CfEnv cfEnv = new CfEnv(new ServiceBindingVcapSource(this.temporaryFolder.getRoot().toPath()));
+		Files.delete(new File(db, "password").toPath());
+
+		Map<String, Object> credentials = cfEnv.findServiceByName("db").getCredentials().getMap();
+		assertThat(credentials.keySet()).containsExactly("password", "type");
+		assertThat(credentials).hasSize(2);
+		assertThatThrownBy(() -> credentials.get("password")).isInstanceOf(UncheckedIOException.class);
+	}
+
+	@Test
+	public void testMissingRoot() {
+		CfEnv cfEnv = new CfEnv(new ServiceBindingVcapSource(new File(this.temporaryFolder.getRoot(), "missing").toPath()));
+		assertThat(cfEnv.findAllServices()).isEmpty();
+	}
+
+	private void write(File directory, String name, String value) throws IOException {
+		Files.write(new File(directory, name).toPath(), value.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
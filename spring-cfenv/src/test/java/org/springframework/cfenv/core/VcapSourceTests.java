@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cfenv.core;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.util.ResourceUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+public class VcapSourceTests {
+
+	@Test
+	public void testFileSource() throws Exception {
+		File services = ResourceUtils.getFile("classpath:vcap-services.json");
+		File application = ResourceUtils.getFile("classpath:vcap-application.json");
+		CfEnv cfEnv = new CfEnv(new FileVcapSource(services.toPath(), application.toPath()));
+		assertServices(cfEnv);
+		assertThat(cfEnv.getApp().getApplicationName()).isEqualTo("styx-james");
+		assertThat(CfEnvMetrics.getVcapServicesSize()).isEqualTo(services.length());
+	}
+
+	@Test
+	public void testEmptyFileSource() throws Exception {
+		Path services = Files.createTempFile("vcap-services", ".json");
+		try {
+			CfEnv cfEnv = new CfEnv(new FileVcapSource(services));
+			assertThat(cfEnv.findAllServices()).isEmpty();
+			assertThat(cfEnv.getApp()).isNull();
+		}
+		finally {
+			Files.delete(services);
+		}
+	}
+
+	@Test
+	public void testClasspathSource() {
+		CfEnv cfEnv = new CfEnv(new ClasspathVcapSource("vcap-services.json", "vcap-application.json"));
+		assertServices(cfEnv);
+		assertThat(cfEnv.getApp().getApplicationName()).isEqualTo("styx-james");
+	}
+
+	@Test
+	public void testMissingClasspathSource() {
+		assertThatThrownBy(() -> new CfEnv(new ClasspathVcapSource("missing.json")))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("class path resource [missing.json]");
+	}
+
+	@Test
+	public void testInMemorySource() throws Exception {
+		File services = ResourceUtils.getFile("classpath:vcap-services.json");
+		CfEnv cfEnv = new CfEnv(new InMemoryVcapSource(new String(Files.readAllBytes(services.toPath()))));
+		assertServices(cfEnv);
+		assertThat(cfEnv.getApp()).isNull();
+	}
+
+	@Test
+	public void testInMemorySourceSizeInBytes() throws Exception {
+		String services = "{\"user-provided\": [{\"name\": \"caf\u00e9\", \"credentials\": {\"key\": \"\u20ac\"}}]}";
+		new CfEnv(new InMemoryVcapSource(services));
+		assertThat(CfEnvMetrics.getVcapServicesSize()).isEqualTo(services.getBytes("UTF-8").length)
+				.isGreaterThan(services.length());
+	}
+
+	@Test
+	public void testValueTypes() {
+		CfEnv cfEnv = new CfEnv(new InMemoryVcapSource("{\"p-redis\":[{\"name\":\"redis\",\"tags\":[],"
+				+ "\"credentials\":{\"port\":6379,\"maxmemory\":17179869184,\"ratio\":0.5,\"tls\":true,"
+				+ "\"password\":null,\"nodes\":[{\"host\":\"10.0.0.1\"}]}}]}", "null"));
+		Map<String, Object> credentials = cfEnv.findCredentialsByName("redis").getMap();
+		assertThat(credentials.get("port")).isEqualTo(6379);
+		assertThat(credentials.get("maxmemory")).isEqualTo(17179869184L);
+		assertThat(credentials.get("ratio")).isEqualTo(0.5D);
+		assertThat(credentials.get("tls")).isEqualTo(true);
+		assertThat(credentials).containsKey("password");
+		assertThat(credentials.get("password")).isNull();
+		assertThat(credentials.get("nodes")).isEqualTo(Collections.singletonList(Collections.singletonMap("host", "10.0.0.1")));
+		assertThat(cfEnv.getApp()).isNull();
+	}
+
+	@Test
+	public void testInvalidServicesDocument() {
+		assertThatThrownBy(() -> new CfEnv(new InMemoryVcapSource("[]"))).isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Could not access/parse VCAP_SERVICES");
+		assertThatThrownBy(() -> new CfEnv(new InMemoryVcapSource("{\"p-redis\":{}}")))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("Could not access/parse VCAP_SERVICES");
+	}
+
+	private void assertServices(CfEnv cfEnv) {
+		assertThat(cfEnv.findAllServices()).extracting(CfService::getName).containsExactlyInAnyOrder("mysql", "redis");
+		assertThat(cfEnv.findServiceByName("mysql").getCredentials().getUsername()).isEqualTo("mysql_username");
+	}
+
+}